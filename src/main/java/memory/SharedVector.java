@@ -1,5 +1,7 @@
 package memory;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
 public class SharedVector {
@@ -49,7 +51,7 @@ public class SharedVector {
     public void writeLock() {
         // TODO: acquire write lock
         // Write lock = exclusive access. Only one thread can hold it, and no readers allowed
-        this.lock.writeLock().lock();
+        acquire(this.lock.writeLock(), true);
     }
 
     public void writeUnlock() {
@@ -60,7 +62,32 @@ public class SharedVector {
     public void readLock() {
         // TODO: acquire read lock
         // Read lock = shared access. Multiple readers can hold it, but blocks writers
-        this.lock.readLock().lock();
+        acquire(this.lock.readLock(), false);
+    }
+
+    private void acquire(Lock l, boolean write) {
+        // Timed tryLock keeps the lock's queueing rules; plain tryLock() would let readers barge past a queued writer
+        try {
+            if (l.tryLock(0, TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            // Locking is not interruptible here; take the lock untimed and leave the flag for the caller
+            l.lock();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Contended: time the wait as a JFR event (free when no recording is running)
+        VectorLockWaitEvent event = new VectorLockWaitEvent();
+        event.begin();
+        l.lock();
+        event.end();
+        if (event.shouldCommit()) {
+            event.write = write;
+            event.length = vector.length;
+            event.orientation = String.valueOf(orientation);
+            event.commit();
+        }
     }
 
     public void readUnlock() {
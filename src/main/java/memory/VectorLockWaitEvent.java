@@ -0,0 +1,27 @@
+package memory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a thread that had to wait for a SharedVector lock.
+ * Only emitted when the lock was contended, so uncontended locking stays as cheap as before.
+ */
+@Name("memory.VectorLockWait")
+@Label("Vector Lock Wait")
+@Category({"Linear Algebra Engine", "Memory"})
+@Description("Time spent waiting for a contended SharedVector read or write lock")
+class VectorLockWaitEvent extends Event {
+
+    @Label("Write Lock")
+    boolean write;
+
+    @Label("Vector Length")
+    int length;
+
+    @Label("Orientation")
+    String orientation;
+}
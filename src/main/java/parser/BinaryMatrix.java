@@ -0,0 +1,319 @@
+package parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Binary matrix files, for operands too big to be worth writing as JSON text.
+ *
+ * Two formats are read, told apart by their magic bytes rather than their extension:
+ * <ul>
+ *   <li>NumPy .npy (versions 1-3), 2-D, dtype float64, float32, int64 or int32, either byte order,
+ *       C or Fortran order.</li>
+ *   <li>LAE raw: the 8 ASCII bytes "LAEMAT01", then rows and columns as little-endian int32,
+ *       then rows*columns little-endian float64 values in row-major order.</li>
+ * </ul>
+ * Files are memory-mapped and copied into the row arrays with bulk buffer reads;
+ * the rows are what SharedMatrix.loadRowMajor wraps, so nothing is copied again after loading.
+ */
+public final class BinaryMatrix {
+
+    private static final byte[] NPY_MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+    private static final byte[] RAW_MAGIC = "LAEMAT01".getBytes(StandardCharsets.US_ASCII);
+    private static final int RAW_HEADER_BYTES = RAW_MAGIC.length + 8;
+    private static final long MAP_WINDOW_BYTES = 1L << 30; // A single mapping is limited to 2 GB
+    private static final int MAX_NPY_HEADER_BYTES = 1 << 20; // numpy itself writes a few hundred bytes at most
+
+    private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([<>|=])([fi])(\\d)'");
+    private static final Pattern FORTRAN = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private BinaryMatrix() {}
+
+    /**
+     * Layout of the numbers in a file, as read from its header.
+     */
+    private static final class Layout {
+        final long dataOffset;
+        final int rows;
+        final int cols;
+        final ByteOrder order;
+        final char kind; // 'f' or 'i'
+        final int width; // bytes per element
+        final boolean columnMajor;
+
+        Layout(long dataOffset, int rows, int cols, ByteOrder order, char kind, int width, boolean columnMajor) {
+            this.dataOffset = dataOffset;
+            this.rows = rows;
+            this.cols = cols;
+            this.order = order;
+            this.kind = kind;
+            this.width = width;
+            this.columnMajor = columnMajor;
+        }
+    }
+
+    /**
+     * True if the file starts with the .npy or LAE raw magic bytes.
+     */
+    public static boolean isBinary(Path path) {
+        byte[] head = new byte[RAW_MAGIC.length];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n = in.readNBytes(head, 0, head.length);
+            return startsWith(head, n, NPY_MAGIC) || startsWith(head, n, RAW_MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean startsWith(byte[] head, int length, byte[] magic) {
+        return length >= magic.length && Arrays.equals(head, 0, magic.length, magic, 0, magic.length);
+    }
+
+    /**
+     * Shape of the matrix in the file as {rows, cols}, read from the header only
+     * (the file size is checked against it, the data itself is not read).
+     */
+    public static int[] shape(Path path) throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel, path);
+            return new int[]{layout.rows, layout.cols};
+        }
+    }
+
+    public static double[][] read(Path path) throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Layout layout = readLayout(channel, path);
+            return layout.columnMajor ? readColumnMajor(channel, layout) : readRowMajor(channel, layout);
+        }
+    }
+
+    private static double[][] readRowMajor(FileChannel channel, Layout layout) throws IOException {
+        double[][] matrix = new double[layout.rows][];
+        long rowBytes = (long) layout.cols * layout.width;
+        int rowsPerWindow = (int) Math.max(1, Math.min(layout.rows, MAP_WINDOW_BYTES / Math.max(1, rowBytes)));
+        for (int first = 0; first < layout.rows; first += rowsPerWindow) {
+            int count = Math.min(rowsPerWindow, layout.rows - first);
+            ByteBuffer window = map(channel, layout.dataOffset + first * rowBytes, count * rowBytes, layout.order);
+            for (int r = 0; r < count; r++) {
+                double[] row = new double[layout.cols];
+                window.position((int) (r * rowBytes));
+                readInto(window, row, layout);
+                matrix[first + r] = row;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Fortran-order files hold columns; each column is read in bulk and scattered into the rows.
+     */
+    private static double[][] readColumnMajor(FileChannel channel, Layout layout) throws IOException {
+        double[][] matrix = new double[layout.rows][layout.cols];
+        long colBytes = (long) layout.rows * layout.width;
+        int colsPerWindow = (int) Math.max(1, Math.min(layout.cols, MAP_WINDOW_BYTES / Math.max(1, colBytes)));
+        double[] column = new double[layout.rows];
+        for (int first = 0; first < layout.cols; first += colsPerWindow) {
+            int count = Math.min(colsPerWindow, layout.cols - first);
+            ByteBuffer window = map(channel, layout.dataOffset + first * colBytes, count * colBytes, layout.order);
+            for (int c = 0; c < count; c++) {
+                window.position((int) (c * colBytes));
+                readInto(window, column, layout);
+                for (int r = 0; r < layout.rows; r++) {
+                    matrix[r][first + c] = column[r];
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size, ByteOrder order) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        return mapped.order(order);
+    }
+
+    /**
+     * Fill target with the next target.length elements of the buffer, converting to double.
+     */
+    private static void readInto(ByteBuffer buffer, double[] target, Layout layout) {
+        if (layout.kind == 'f' && layout.width == 8) {
+            buffer.asDoubleBuffer().get(target);
+        } else if (layout.kind == 'f') {
+            java.nio.FloatBuffer floats = buffer.asFloatBuffer();
+            for (int i = 0; i < target.length; i++) {
+                target[i] = floats.get(i);
+            }
+        } else if (layout.width == 8) {
+            java.nio.LongBuffer longs = buffer.asLongBuffer();
+            for (int i = 0; i < target.length; i++) {
+                target[i] = longs.get(i);
+            }
+        } else {
+            java.nio.IntBuffer ints = buffer.asIntBuffer();
+            for (int i = 0; i < target.length; i++) {
+                target[i] = ints.get(i);
+            }
+        }
+    }
+
+    private static Layout readLayout(FileChannel channel, Path path) throws IOException, ParseException {
+        Layout layout = readHeader(channel, path);
+        long expected = layout.dataOffset + (long) layout.rows * layout.cols * layout.width;
+        if (channel.size() < expected) {
+            throw new ParseException("Matrix file " + path + " is truncated", (int) Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+        return layout;
+    }
+
+    private static Layout readHeader(FileChannel channel, Path path) throws IOException, ParseException {
+        ByteBuffer head = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(head, 0);
+        byte[] bytes = head.array();
+        int n = head.position();
+        if (startsWith(bytes, n, RAW_MAGIC)) {
+            if (n < RAW_HEADER_BYTES - 4) {
+                throw new ParseException("Matrix file " + path + " is truncated", n);
+            }
+            ByteBuffer dims = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(dims, RAW_MAGIC.length);
+            dims.flip();
+            if (dims.remaining() < 8) {
+                throw new ParseException("Matrix file " + path + " is truncated", RAW_MAGIC.length);
+            }
+            return checked(new Layout(RAW_HEADER_BYTES, dims.getInt(), dims.getInt(),
+                    ByteOrder.LITTLE_ENDIAN, 'f', 8, false), path);
+        }
+        if (startsWith(bytes, n, NPY_MAGIC)) {
+            return readNpyLayout(channel, bytes, n, path);
+        }
+        throw new ParseException("Not a .npy or LAE raw matrix file: " + path, 0);
+    }
+
+    private static Layout readNpyLayout(FileChannel channel, byte[] head, int n, Path path)
+            throws IOException, ParseException {
+        int major = n > 6 ? head[6] : -1;
+        int headerStart;
+        long headerLength;
+        ByteBuffer le = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+        if (major == 1) {
+            headerStart = 10;
+            headerLength = le.getShort(8) & 0xFFFF;
+        } else if (major == 2 || major == 3) {
+            headerStart = 12;
+            headerLength = le.getInt(8) & 0xFFFFFFFFL;
+        } else {
+            throw new ParseException("Unsupported .npy version " + major + " in " + path, 6);
+        }
+        if (headerLength <= 0 || headerLength > MAX_NPY_HEADER_BYTES || headerStart + headerLength > channel.size()) {
+            throw new ParseException("Bad .npy header length " + headerLength + " in " + path, 8);
+        }
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) headerLength);
+        channel.read(headerBytes, headerStart);
+        String header = new String(headerBytes.array(), 0, headerBytes.position(),
+                major == 3 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+
+        Matcher descr = DESCR.matcher(header);
+        if (!descr.find()) {
+            throw new ParseException("Unsupported .npy dtype in " + path + ": " + header.trim(), headerStart);
+        }
+        char kind = descr.group(2).charAt(0);
+        int width = Integer.parseInt(descr.group(3));
+        if (width != 4 && width != 8) {
+            throw new ParseException("Unsupported .npy dtype in " + path + ": " + descr.group(0), headerStart);
+        }
+        ByteOrder order = descr.group(1).equals(">") ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+
+        Matcher fortran = FORTRAN.matcher(header);
+        boolean columnMajor = fortran.find() && fortran.group(1).equals("True");
+
+        Matcher shape = SHAPE.matcher(header);
+        if (!shape.find()) {
+            throw new ParseException("Missing shape in .npy header of " + path, headerStart);
+        }
+        String[] dims = Arrays.stream(shape.group(1).split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        if (dims.length == 1) {
+            throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", headerStart);
+        }
+        if (dims.length != 2) {
+            throw new ParseException("Only 2-D matrices are supported, " + path + " has shape (" + shape.group(1) + ")", headerStart);
+        }
+        return checked(new Layout(headerStart + headerLength, Integer.parseInt(dims[0]), Integer.parseInt(dims[1]),
+                order, kind, width, columnMajor), path);
+    }
+
+    private static Layout checked(Layout layout, Path path) throws ParseException {
+        if (layout.rows <= 0 || layout.cols <= 0) {
+            throw new ParseException("Empty array cannot be parsed as DataNode.", 0);
+        }
+        return layout;
+    }
+
+    /**
+     * Write the matrix as a version 1.0 .npy file (little-endian float64, C order).
+     */
+    public static void writeNpy(double[][] matrix, Path path) throws IOException {
+        int rows = matrix.length;
+        int cols = rows == 0 ? 0 : matrix[0].length;
+        String dict = "{'descr': '<f8', 'fortran_order': False, 'shape': (" + rows + ", " + cols + "), }";
+        // Magic, version and length take 10 bytes; the header is space-padded so the data starts 64-byte aligned
+        int unpadded = 10 + dict.length() + 1;
+        int padded = (unpadded + 63) / 64 * 64;
+        StringBuilder header = new StringBuilder(dict);
+        header.append(" ".repeat(padded - unpadded)).append('\n');
+        ByteBuffer prefix = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+        prefix.put(NPY_MAGIC).put((byte) 1).put((byte) 0).putShort((short) header.length());
+        writeWithHeader(matrix, path, prefix.array(), header.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Write the matrix in the LAE raw format described above.
+     */
+    public static void writeRaw(double[][] matrix, Path path) throws IOException {
+        int rows = matrix.length;
+        int cols = rows == 0 ? 0 : matrix[0].length;
+        ByteBuffer dims = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(rows).putInt(cols);
+        writeWithHeader(matrix, path, RAW_MAGIC, dims.array());
+    }
+
+    private static void writeWithHeader(double[][] matrix, Path path, byte[] magic, byte[] header) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(magic));
+            writeFully(channel, ByteBuffer.wrap(header));
+            int cols = matrix.length == 0 ? 0 : matrix[0].length;
+            int rowsPerBuffer = Math.max(1, (1 << 20) / Math.max(1, cols * 8));
+            ByteBuffer buffer = ByteBuffer.allocate(rowsPerBuffer * cols * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (int r = 0; r < matrix.length; r++) {
+                if (matrix[r].length != cols) {
+                    throw new IllegalArgumentException("Inconsistent row sizes in matrix.");
+                }
+                buffer.asDoubleBuffer().put(matrix[r]);
+                buffer.position(buffer.position() + cols * 8);
+                if (!buffer.hasRemaining() || r == matrix.length - 1) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
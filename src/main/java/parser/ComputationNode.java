@@ -7,6 +7,7 @@ public class ComputationNode {
     private ComputationNodeType nodeType;
     private List<ComputationNode> children = null;
     private double[][] matrix = null; // only used for MATRIX nodes
+    private MatrixRef ref = null; // MATRIX nodes whose data is still in a file
 
     public ComputationNode(String operatorStr, List<ComputationNode> children) throws IllegalArgumentException {
         this.nodeType = mapOperator(operatorStr);
@@ -38,6 +39,14 @@ public class ComputationNode {
         this.matrix = matrix;
     }
 
+    /**
+     * A matrix leaf that is read from its file each time getMatrix() is called.
+     */
+    public ComputationNode(MatrixRef ref) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.ref = ref;
+    }
+
     public ComputationNodeType getNodeType() {
         return nodeType;
     }
@@ -88,9 +97,23 @@ public class ComputationNode {
         this.nodeType = ComputationNodeType.MATRIX;
         this.children = null;
         this.matrix = matrix;
+        this.ref = null;
+    }
+
+    /**
+     * The file behind a referenced matrix leaf, or null if the matrix is held in memory.
+     */
+    public MatrixRef getRef() {
+        return ref;
     }
 
+    /**
+     * For a referenced leaf this loads a fresh copy from the file, which the node does not keep.
+     */
     public double[][] getMatrix() {
+        if (matrix == null && ref != null) {
+            return ref.load();
+        }
         if (matrix == null) {
             throw new IllegalStateException("This node does not contain a matrix.");
         }
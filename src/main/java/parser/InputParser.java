@@ -1,68 +1,488 @@
 package parser;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
+/**
+ * Reads an expression file straight off Jackson's token stream.
+ * Matrix elements go directly into primitive double rows, so no JsonNode tree
+ * (and no boxed number per element) is ever built; peak memory stays close to the matrices themselves.
+ *
+ * With more than one decode thread, large files are parsed in two passes instead:
+ * a quick scan that builds the tree and notes where each leaf's rows sit in the file without converting any numbers,
+ * then the rows are decoded in parallel, in chunks of about CHUNK_BYTES, straight into the leaves' arrays.
+ *
+ * A leaf may also be {"ref": "path"}, naming a binary matrix file (see BinaryMatrix) relative to the input's directory,
+ * and the input itself may be such a file, in which case it is a single matrix operand.
+ * Only the file's header is read here; the data is loaded when the engine uses the leaf (see MatrixRef).
+ *
+ * Nodes can be named once in a "let" section and used by name anywhere after it;
+ * every use is the same node object, so the result is a DAG rather than a tree.
+ */
 public class InputParser {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+
+    private static final long PARALLEL_MIN_BYTES = 1 << 20; // Smaller files aren't worth a second pass
+    private static final long CHUNK_BYTES = 1 << 20; // Rows decoded per parallel task, roughly
+
+    private final int decodeThreads;
+
+    public InputParser() {
+        this(1);
+    }
+
+    /**
+     * @param decodeThreads threads used to decode matrix rows; 1 parses in a single streaming pass
+     */
+    public InputParser(int decodeThreads) {
+        if (decodeThreads <= 0) {
+            throw new IllegalArgumentException("decodeThreads should be bigger than 0");
+        }
+        this.decodeThreads = decodeThreads;
+    }
 
     public ComputationNode parse(String inputPath) throws ParseException {
-        try {
-            File inputFile = new File(inputPath);
-            JsonNode rootJsonNode = mapper.readTree(inputFile);
-            ComputationNode root = parseJsonNode(rootJsonNode);
-            return root;
+        File inputFile = new File(inputPath);
+        if (BinaryMatrix.isBinary(inputFile.toPath())) {
+            return new ComputationNode(MatrixRef.of(inputFile.toPath()));
+        }
+        if (decodeThreads > 1 && inputFile.length() >= PARALLEL_MIN_BYTES) {
+            return parseIndexed(inputFile);
+        }
+        try (JsonParser parser = FACTORY.createParser(inputFile)) {
+            return parseRoot(parser, new Scope(baseDir(inputFile), p -> new ComputationNode(parseMatrix(p))));
         } catch (IOException e) {
             throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
         }
     }
 
-    private ComputationNode parseJsonNode(JsonNode jsonNode) throws ParseException {
-        if (jsonNode.has("operator") && jsonNode.has("operands")) {
-            String operatorStr = jsonNode.get("operator").asText();
-            ArrayNode operandJsonNodes = (ArrayNode) jsonNode.get("operands");
-            List<ComputationNode> operands = new ArrayList<>();
-            for (int i = 0; i < operandJsonNodes.size(); i++) {
-                operands.add(parseJsonNode(operandJsonNodes.get(i)));
-            }
-            return new ComputationNode(operatorStr, operands);
+    /**
+     * Parse a file holding any number of root expressions one after another (e.g. one per line),
+     * handing each to the consumer as soon as it is parsed, so only one is held at a time.
+     * Returns how many roots were read; a binary matrix file is a single root.
+     * A ParseException stops the file there, after the roots before it were handed over.
+     */
+    public int parseEach(String inputPath, Consumer<ComputationNode> roots) throws ParseException {
+        File inputFile = new File(inputPath);
+        if (BinaryMatrix.isBinary(inputFile.toPath())) {
+            roots.accept(new ComputationNode(MatrixRef.of(inputFile.toPath())));
+            return 1;
         }
-        else if (jsonNode.isArray()) {
-            if (jsonNode.size() == 0) {
-                throw new ParseException("Empty array cannot be parsed as DataNode.", 0);
+        try (JsonParser parser = FACTORY.createParser(inputFile)) {
+            Scope scope = new Scope(baseDir(inputFile), p -> new ComputationNode(parseMatrix(p)));
+            int count = 0;
+            while (parser.nextToken() != null) {
+                roots.accept(parseNode(parser, scope));
+                count++;
             }
-            // Check if it's a vector (1D array)
-            if (jsonNode.get(0).isNumber()) {
-                throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", 0);
+            return count;
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Parse one expression document held in memory, e.g. a request read off a socket.
+     * Refs in it resolve against baseDir and must stay inside it, symbolic links included,
+     * since whoever sent the document may not be allowed to read the rest of the file system.
+     */
+    public ComputationNode parseDocument(String json, Path baseDir) throws ParseException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return parseRoot(parser, new Scope(baseDir, p -> new ComputationNode(parseMatrix(p)), true));
+        } catch (IOException e) {
+            throw new ParseException("Failed to parse the input JSON: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * What to do with a leaf matrix; called with the parser on the leaf's START_ARRAY,
+     * and must leave it on the matching END_ARRAY.
+     */
+    private interface LeafReader {
+        ComputationNode read(JsonParser parser) throws IOException, ParseException;
+    }
+
+    /**
+     * What a node is parsed against: the directory refs resolve in (and whether they must stay in it),
+     * the leaf reader, and the names bound by the enclosing "let" sections.
+     */
+    private static final class Scope {
+        final Path base;
+        final boolean confined;
+        final LeafReader leaves;
+        final Map<String, ComputationNode> names;
+
+        Scope(Path base, LeafReader leaves) {
+            this(base, leaves, false);
+        }
+
+        Scope(Path base, LeafReader leaves, boolean confined) {
+            this(base, confined, leaves, Map.of());
+        }
+
+        private Scope(Path base, boolean confined, LeafReader leaves, Map<String, ComputationNode> names) {
+            this.base = base;
+            this.confined = confined;
+            this.leaves = leaves;
+            this.names = names;
+        }
+
+        /**
+         * A scope for a nested "let": sees the outer names, and may shadow them.
+         */
+        Scope nested() {
+            return new Scope(base, confined, leaves, new HashMap<>(names));
+        }
+    }
+
+    private ComputationNode parseRoot(JsonParser parser, Scope scope) throws IOException, ParseException {
+        JsonToken first = parser.nextToken();
+        if (first == null) {
+            throw new ParseException("Invalid node structure: empty input", 0);
+        }
+        return parseNode(parser, scope);
+    }
+
+    private static Path baseDir(File inputFile) {
+        File parent = inputFile.getAbsoluteFile().getParentFile();
+        return parent == null ? Path.of("") : parent.toPath();
+    }
+
+    /**
+     * Parse the value the parser is positioned on; leaves the parser on its last token.
+     * A string is a name bound by a "let", and yields the bound node itself, so every use shares it.
+     */
+    private ComputationNode parseNode(JsonParser parser, Scope scope) throws IOException, ParseException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parseOperator(parser, scope);
+        }
+        if (token == JsonToken.START_ARRAY) {
+            return scope.leaves.read(parser);
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            ComputationNode bound = scope.names.get(parser.getText());
+            if (bound == null) {
+                throw error(parser, "Unknown name: " + parser.getText());
             }
-            // Otherwise, it's a matrix (2D array)
-            else {
-                double[][] matrix = new double[jsonNode.size()][];
-                int width = jsonNode.get(0).size();
-                for (int i = 0; i < jsonNode.size(); i++) {
-                    JsonNode rowJsonNode = jsonNode.get(i);
-                    if (rowJsonNode.size() != width) {
-                        throw new ParseException("Inconsistent row sizes in matrix.", 0);
+            return bound;
+        }
+        throw error(parser, "Invalid node structure: " + parser.getText());
+    }
+
+    /**
+     * An object node: an operator with its operands, a {"ref": "path"} leaf,
+     * or {"let": {"name": node, ...}, "in": node}, where each binding may use the names bound before it.
+     */
+    private ComputationNode parseOperator(JsonParser parser, Scope scope) throws IOException, ParseException {
+        String operatorStr = null;
+        List<ComputationNode> operands = null;
+        String ref = null;
+        Scope bindings = null;
+        ComputationNode body = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("operator")) {
+                operatorStr = value.isScalarValue() ? parser.getValueAsString() : null;
+                parser.skipChildren();
+            } else if (field.equals("operands")) {
+                if (value != JsonToken.START_ARRAY) {
+                    throw error(parser, "Operands should be an array");
+                }
+                operands = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    operands.add(parseNode(parser, scope));
+                }
+            } else if (field.equals("ref")) {
+                if (value != JsonToken.VALUE_STRING) {
+                    throw error(parser, "\"ref\" should be a file path string");
+                }
+                ref = parser.getText();
+            } else if (field.equals("let")) {
+                if (value != JsonToken.START_OBJECT) {
+                    throw error(parser, "\"let\" should be an object of named nodes");
+                }
+                if (body != null) {
+                    throw error(parser, "\"let\" must come before \"in\"");
+                }
+                bindings = scope.nested();
+                Set<String> bound = new HashSet<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    if (!bound.add(name)) {
+                        throw error(parser, "Duplicate name in \"let\": " + name);
                     }
-                    if (!rowJsonNode.isArray()) {
-                        throw new ParseException("Invalid matrix row: " + rowJsonNode.toString(), 0);
+                    parser.nextToken();
+                    bindings.names.put(name, parseNode(parser, bindings));
+                }
+            } else if (field.equals("in")) {
+                body = parseNode(parser, bindings != null ? bindings : scope);
+            } else {
+                // Unknown fields are ignored, as before
+                parser.skipChildren();
+            }
+        }
+        if (bindings != null || body != null) {
+            if (bindings == null || body == null || operatorStr != null || operands != null || ref != null) {
+                throw error(parser, "Invalid node structure: expected \"let\" followed by \"in\"");
+            }
+            return body;
+        }
+        if (ref != null) {
+            if (operatorStr != null || operands != null) {
+                throw error(parser, "Invalid node structure: \"ref\" cannot be combined with \"operator\" or \"operands\"");
+            }
+            return new ComputationNode(MatrixRef.of(resolveRef(parser, scope, ref)));
+        }
+        if (operatorStr == null || operands == null) {
+            throw error(parser, "Invalid node structure: expected both \"operator\" and \"operands\"");
+        }
+        return new ComputationNode(operatorStr, operands);
+    }
+
+    private double[][] parseMatrix(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            throw error(parser, "Empty array cannot be parsed as DataNode.");
+        }
+        if (token.isNumeric()) {
+            throw error(parser, "Vectors (1D arrays) are not supported as standalone nodes.");
+        }
+        List<double[]> rows = new ArrayList<>();
+        double[] buffer = new double[16]; // Grows only while reading the first row
+        int width = -1;
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_ARRAY) {
+                throw error(parser, "Invalid matrix row: " + parser.getText());
+            }
+            if (width < 0) {
+                int n = 0;
+                for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                    if (n == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, n * 2);
                     }
-                    matrix[i] = new double[rowJsonNode.size()];
-                    for (int j = 0; j < rowJsonNode.size(); j++) {
-                        matrix[i][j] = rowJsonNode.get(j).asDouble();
+                    buffer[n++] = readElement(parser, t);
+                }
+                width = n;
+                rows.add(Arrays.copyOf(buffer, n));
+            } else {
+                double[] row = new double[width];
+                int n = 0;
+                for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+                    if (n == width) {
+                        throw error(parser, "Inconsistent row sizes in matrix.");
                     }
+                    row[n++] = readElement(parser, t);
+                }
+                if (n != width) {
+                    throw error(parser, "Inconsistent row sizes in matrix.");
+                }
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new double[0][]);
+    }
+
+    /**
+     * One matrix element. Numbers are read as primitives; anything else converts
+     * the way JsonNode.asDouble() did (numeric strings parse, true is 1, the rest is 0).
+     */
+    private double readElement(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_STRING:
+                return parser.getValueAsDouble(0.0);
+            case VALUE_TRUE:
+                return 1.0;
+            case START_ARRAY:
+            case START_OBJECT:
+                parser.skipChildren();
+                return 0.0;
+            default:
+                return 0.0;
+        }
+    }
+
+    /**
+     * A leaf found by the index scan: its node (resolved once decoded) and its rows, filled in by chunk.
+     */
+    private static final class Leaf {
+        final ComputationNode node = new ComputationNode((double[][]) null);
+        final List<Chunk> chunks = new ArrayList<>();
+        double[][] rows;
+    }
+
+    /**
+     * Consecutive rows of a leaf: bytes [start, end) of the file, from the first row's '[' to the last row's ']'.
+     */
+    private static final class Chunk {
+        final Leaf leaf;
+        final int firstRow;
+        final long start;
+        long end;
+        int rowCount;
+
+        Chunk(Leaf leaf, int firstRow, long start) {
+            this.leaf = leaf;
+            this.firstRow = firstRow;
+            this.start = start;
+        }
+    }
+
+    private ComputationNode parseIndexed(File inputFile) throws ParseException {
+        List<Leaf> leaves = new ArrayList<>();
+        ComputationNode root;
+        try (JsonParser parser = FACTORY.createParser(inputFile)) {
+            root = parseRoot(parser, new Scope(baseDir(inputFile), p -> indexLeaf(p, leaves)));
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for (Leaf leaf : leaves) {
+            chunks.addAll(leaf.chunks);
+        }
+        ForkJoinPool pool = new ForkJoinPool(decodeThreads);
+        try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+            List<Future<Void>> decoded = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                decoded.add(pool.submit(() -> {
+                    decodeChunk(channel, chunk);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : decoded) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseException parseError) {
+                throw parseError;
+            }
+            throw new ParseException("Failed to read the input JSON file: " + e.getCause().getMessage(), 0);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParseException("Interrupted while parsing the input", 0);
+        } finally {
+            pool.shutdownNow();
+        }
+        for (Leaf leaf : leaves) {
+            // Each chunk checked its own rows; this catches a width change at a chunk boundary
+            int width = leaf.rows[0].length;
+            for (double[] row : leaf.rows) {
+                if (row.length != width) {
+                    throw new ParseException("Inconsistent row sizes in matrix.", (int) leaf.chunks.get(0).start);
                 }
-                return new ComputationNode(matrix);
             }
+            leaf.node.resolve(leaf.rows);
+        }
+        return root;
+    }
+
+    /**
+     * Index pass: note where the leaf's rows are, grouped into chunks, without converting any numbers.
+     */
+    private ComputationNode indexLeaf(JsonParser parser, List<Leaf> leaves) throws IOException, ParseException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            throw error(parser, "Empty array cannot be parsed as DataNode.");
+        }
+        if (token.isNumeric()) {
+            throw error(parser, "Vectors (1D arrays) are not supported as standalone nodes.");
+        }
+        Leaf leaf = new Leaf();
+        Chunk chunk = null;
+        int row = 0;
+        for (; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.START_ARRAY) {
+                throw error(parser, "Invalid matrix row: " + parser.getText());
+            }
+            long start = parser.currentTokenLocation().getByteOffset();
+            parser.skipChildren();
+            long end = parser.currentLocation().getByteOffset();
+            if (chunk == null || end - chunk.start > CHUNK_BYTES) {
+                chunk = new Chunk(leaf, row, start);
+                leaf.chunks.add(chunk);
+            }
+            chunk.end = end;
+            chunk.rowCount++;
+            row++;
+        }
+        leaf.rows = new double[row][];
+        leaves.add(leaf);
+        return leaf.node;
+    }
+
+    /**
+     * Decode pass: read the chunk's bytes, wrapped in brackets so its rows form one JSON array.
+     */
+    private void decodeChunk(FileChannel channel, Chunk chunk) throws IOException, ParseException {
+        int length = Math.toIntExact(chunk.end - chunk.start);
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = '[';
+        bytes[length + 1] = ']';
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, length);
+        long position = chunk.start;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new ParseException("Input file changed while parsing", (int) chunk.start);
+            }
+            position += read;
+        }
+        try (JsonParser parser = FACTORY.createParser(bytes)) {
+            parser.nextToken();
+            double[][] rows = parseMatrix(parser);
+            if (rows.length != chunk.rowCount) {
+                throw new ParseException("Input file changed while parsing", (int) chunk.start);
+            }
+            System.arraycopy(rows, 0, chunk.leaf.rows, chunk.firstRow, rows.length);
         }
-        else { throw new ParseException("Invalid node structure: " + jsonNode.toString(), 0); }
     }
 
-}
\ No newline at end of file
+    /**
+     * The file a ref names. In a confined scope, a ref that leads outside the base directory,
+     * by an absolute path, by ".." or through a symbolic link, is an error.
+     */
+    private static Path resolveRef(JsonParser parser, Scope scope, String ref) throws IOException, ParseException {
+        Path path = scope.base.resolve(ref);
+        if (scope.confined) {
+            Path base = scope.base.toAbsolutePath().normalize();
+            path = path.toAbsolutePath().normalize();
+            if (!path.startsWith(base) || Files.exists(path) && !path.toRealPath().startsWith(base.toRealPath())) {
+                throw error(parser, "\"ref\" " + ref + " is outside the base directory");
+            }
+        }
+        return path;
+    }
+
+    private static ParseException error(JsonParser parser, String message) {
+        long offset = parser.currentLocation().getCharOffset();
+        if (offset < 0) {
+            offset = parser.currentLocation().getByteOffset(); // Byte-based input only tracks bytes
+        }
+        return new ParseException(message, (int) Math.max(0, Math.min(Integer.MAX_VALUE, offset)));
+    }
+}
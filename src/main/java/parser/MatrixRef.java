@@ -0,0 +1,63 @@
+package parser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * A matrix that stays in its binary file (see BinaryMatrix) until it is needed.
+ * Only the path and the shape from the file's header are kept; every load reads the file again,
+ * so nothing holds on to the data once the caller is done with it.
+ */
+public final class MatrixRef {
+
+    private final Path path;
+    private final int rows;
+    private final int cols;
+
+    private MatrixRef(Path path, int rows, int cols) {
+        this.path = path;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Reads the header of the file now, so a missing or malformed file fails at parse time.
+     */
+    public static MatrixRef of(Path path) throws ParseException {
+        try {
+            int[] shape = BinaryMatrix.shape(path);
+            return new MatrixRef(path, shape[0], shape[1]);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read matrix file " + path + ": " + e.getMessage(), 0);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * A fresh copy of the matrix from the file.
+     */
+    public double[][] load() {
+        try {
+            return BinaryMatrix.read(path);
+        } catch (IOException | ParseException e) {
+            throw new IllegalStateException("Failed to load matrix file " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + rows + "x" + cols + ")";
+    }
+}
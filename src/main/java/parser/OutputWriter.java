@@ -2,17 +2,28 @@ package parser;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+/**
+ * Writes results. Matrices are streamed row by row as compact JSON ({"result": [[...], ...]}),
+ * with doubles in their shortest round-trip form; an output path ending in .npy or .bin
+ * gets the matrix in the matching BinaryMatrix format instead.
+ */
 public class OutputWriter {
 
     private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
 
-    public static class ResultMatrix {
-        public double[][] result;
-        public ResultMatrix(double[][] result) { this.result = result; }
-    }
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER)
+            .build();
 
     public static class ErrorMessage {
         public String error;
@@ -22,8 +33,43 @@ public class OutputWriter {
     public OutputWriter() {}
 
     public static void write(double[][] matrix, String filePath) throws IOException {
-        File file = new File(filePath);
-        mapper.writerWithDefaultPrettyPrinter().writeValue(file, new ResultMatrix(matrix));
+        if (filePath.endsWith(".npy")) {
+            BinaryMatrix.writeNpy(matrix, Path.of(filePath));
+        } else if (filePath.endsWith(".bin")) {
+            BinaryMatrix.writeRaw(matrix, Path.of(filePath));
+        } else {
+            writeJson(matrix, filePath);
+        }
+    }
+
+    /**
+     * Compact JSON, one row at a time; nothing but the generator's buffer is held besides the matrix.
+     */
+    public static void writeJson(double[][] matrix, String filePath) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(new File(filePath), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeFieldName("result");
+            writeRows(generator, matrix);
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * A compact generator over a stream the caller keeps open, for writing results somewhere other than a file.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return FACTORY.createGenerator(out, JsonEncoding.UTF8).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * The matrix as an array of row arrays, written one row at a time.
+     */
+    public static void writeRows(JsonGenerator generator, double[][] matrix) throws IOException {
+        generator.writeStartArray();
+        for (double[] row : matrix) {
+            generator.writeArray(row, 0, row.length);
+        }
+        generator.writeEndArray();
     }
 
     public static void write(String error, String filePath) throws IOException {
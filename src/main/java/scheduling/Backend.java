@@ -0,0 +1,11 @@
+package scheduling;
+
+/**
+ * Which executor runs the engine's row tasks.
+ * TIRED is the fatigue-aware TiredExecutor.
+ * FORK_JOIN splits each batch recursively on a ForkJoinPool and lets its work stealing balance the load.
+ */
+public enum Backend {
+    TIRED,
+    FORK_JOIN
+}
@@ -0,0 +1,38 @@
+package scheduling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning a batch from dispatch until its last task finishes.
+ * Committed on the thread that finished the batch.
+ */
+@Name("scheduling.Batch")
+@Label("Batch")
+@Category({"Linear Algebra Engine", "Scheduling"})
+@Description("A batch submitted through submitAll or submitAllAsync")
+@StackTrace(false)
+class BatchEvent extends Event {
+
+    @Label("Batch Id")
+    long batchId;
+
+    @Label("Executor")
+    String executor;
+
+    @Label("Tasks")
+    int tasks;
+
+    @Label("Priority")
+    String priority;
+
+    @Label("Tenant")
+    String tenant;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,35 @@
+package scheduling;
+
+/**
+ * What the engine needs from an executor: run a batch to completion, report, shut down.
+ */
+public interface BatchExecutor {
+
+    /**
+     * Run every task and wait until all of them finish.
+     * If tasks throw, the rest of the batch still runs and the first exception is rethrown.
+     */
+    void submitAll(Iterable<Runnable> tasks);
+
+    String getWorkerReport();
+
+    /**
+     * The report as a JSON object, for tools rather than people.
+     */
+    String getWorkerReportJson();
+
+    void shutdown() throws InterruptedException;
+
+    /**
+     * Build the executor selected by options.getBackend().
+     */
+    static BatchExecutor create(int numThreads, ExecutorOptions options) {
+        if (options == null) {
+            throw new IllegalArgumentException("options can't be null");
+        }
+        if (options.getBackend() == Backend.FORK_JOIN) {
+            return new ForkJoinExecutor(numThreads, options.getGrainSize(), options.getTraceRecorder());
+        }
+        return new TiredExecutor(numThreads, options);
+    }
+}
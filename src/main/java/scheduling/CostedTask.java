@@ -0,0 +1,36 @@
+package scheduling;
+
+/**
+ * A task that carries an estimate of how much work it does (e.g. FLOPs or bytes touched).
+ * The executor uses the estimates to balance batches; plain Runnables count as cost 1.
+ * Only the relative size of costs within one batch matters.
+ */
+public class CostedTask implements Runnable {
+
+    private final Runnable task;
+    private final long cost;
+
+    public CostedTask(Runnable task, long cost) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task can't be null");
+        }
+        if (cost < 0) {
+            throw new IllegalArgumentException("cost can't be negative");
+        }
+        this.task = task;
+        this.cost = cost;
+    }
+
+    public long getCost() {
+        return cost;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    static long costOf(Runnable task) {
+        return task instanceof CostedTask costed ? costed.cost : 1;
+    }
+}
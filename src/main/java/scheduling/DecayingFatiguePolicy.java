@@ -0,0 +1,38 @@
+package scheduling;
+
+/**
+ * Exponential decay: load(t) = load(t0) * 2^(-(t - t0) / halfLife).
+ * Every load shrinks by the same factor over the same period, which keeps heap order stable.
+ */
+class DecayingFatiguePolicy implements FatiguePolicy {
+
+    private final long halfLifeMillis;
+    private final double halfLifeNanos;
+
+    DecayingFatiguePolicy(long halfLifeMillis) {
+        if (halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("halfLifeMillis should be bigger than 0");
+        }
+        this.halfLifeMillis = halfLifeMillis;
+        this.halfLifeNanos = halfLifeMillis * 1_000_000.0;
+    }
+
+    @Override
+    public double accumulate(double load, long lastUpdateNanos, long nowNanos, long workNanos) {
+        return current(load, lastUpdateNanos, nowNanos) + workNanos;
+    }
+
+    @Override
+    public double current(double load, long lastUpdateNanos, long nowNanos) {
+        long elapsed = nowNanos - lastUpdateNanos;
+        if (elapsed <= 0 || load == 0) {
+            return load;
+        }
+        return load * Math.pow(0.5, elapsed / halfLifeNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "exponential decay (half-life " + halfLifeMillis + " ms)";
+    }
+}
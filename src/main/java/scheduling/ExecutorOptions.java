@@ -0,0 +1,186 @@
+package scheduling;
+
+/**
+ * Optional settings for a TiredExecutor.
+ * Defaults reproduce the original executor: handoff scheduling on platform threads.
+ */
+public class ExecutorOptions {
+
+    private SchedulingMode mode = SchedulingMode.HANDOFF;
+    private boolean virtualThreads = false;
+    private boolean spinHandoff = false;
+    private int minThreads = 0; // 0 means the pool keeps its initial size
+    private int maxThreads = 0;
+    private long idleTimeoutMillis = 0;
+    private FatiguePolicy fatiguePolicy = FatiguePolicy.lifetime();
+    private int queueCapacity = Integer.MAX_VALUE;
+    private Backend backend = Backend.TIRED;
+    private int grainSize = 0; // 0 means chosen per batch
+    private TraceRecorder traceRecorder = null; // null means tracing is off
+
+    public ExecutorOptions() {}
+
+    public ExecutorOptions mode(SchedulingMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode can't be null");
+        }
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Run every worker loop on a virtual thread instead of a platform thread.
+     * Fatigue, idle-time accounting and the worker report are unchanged.
+     */
+    public ExecutorOptions virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Hand tasks to workers through a volatile mailbox that spins briefly before parking,
+     * instead of a blocking queue. Trades a little idle CPU for lower wake-up latency.
+     */
+    public ExecutorOptions spinHandoff(boolean spinHandoff) {
+        this.spinHandoff = spinHandoff;
+        return this;
+    }
+
+    /**
+     * Let the pool grow up to maxThreads when tasks back up,
+     * and retire workers that stay idle for idleTimeoutMillis while more than minThreads are alive.
+     * The executor's initial thread count must lie within [minThreads, maxThreads].
+     */
+    public ExecutorOptions elastic(int minThreads, int maxThreads, long idleTimeoutMillis) {
+        if (minThreads <= 0 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("need 0 < minThreads <= maxThreads");
+        }
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("idleTimeoutMillis should be bigger than 0");
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * How workers' past work turns into fatigue; lifetime totals by default.
+     */
+    public ExecutorOptions fatiguePolicy(FatiguePolicy fatiguePolicy) {
+        if (fatiguePolicy == null) {
+            throw new IllegalArgumentException("fatiguePolicy can't be null");
+        }
+        this.fatiguePolicy = fatiguePolicy;
+        return this;
+    }
+
+    /**
+     * Bound the number of tasks waiting for a worker, counted per task in both modes.
+     * Once the queue is full, submit(task) waits for room and trySubmit(task) refuses the task.
+     * Batches wait for room too, going in piece by piece as the queue drains.
+     */
+    public ExecutorOptions queueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity should be bigger than 0");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Which executor BatchExecutor.create builds; the other settings here only apply to TIRED.
+     */
+    public ExecutorOptions backend(Backend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("backend can't be null");
+        }
+        this.backend = backend;
+        return this;
+    }
+
+    /**
+     * FORK_JOIN only: largest range of tasks a worker runs without splitting it further.
+     * 0 (the default) picks a grain per batch that gives each worker several ranges.
+     */
+    public ExecutorOptions grainSize(int grainSize) {
+        if (grainSize < 0) {
+            throw new IllegalArgumentException("grainSize can't be negative");
+        }
+        this.grainSize = grainSize;
+        return this;
+    }
+
+    /**
+     * Record every task on every worker (and every node, when used by the engine) into the given timeline.
+     * Pass null to turn tracing off.
+     */
+    public ExecutorOptions trace(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+        return this;
+    }
+
+    ExecutorOptions copy() {
+        ExecutorOptions copy = new ExecutorOptions();
+        copy.mode = mode;
+        copy.virtualThreads = virtualThreads;
+        copy.spinHandoff = spinHandoff;
+        copy.minThreads = minThreads;
+        copy.maxThreads = maxThreads;
+        copy.idleTimeoutMillis = idleTimeoutMillis;
+        copy.fatiguePolicy = fatiguePolicy;
+        copy.queueCapacity = queueCapacity;
+        copy.backend = backend;
+        copy.grainSize = grainSize;
+        copy.traceRecorder = traceRecorder;
+        return copy;
+    }
+
+    public SchedulingMode getMode() {
+        return mode;
+    }
+
+    public boolean useVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public boolean useSpinHandoff() {
+        return spinHandoff;
+    }
+
+    public boolean isElastic() {
+        return minThreads > 0;
+    }
+
+    public int getMinThreads() {
+        return minThreads;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public FatiguePolicy getFatiguePolicy() {
+        return fatiguePolicy;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public int getGrainSize() {
+        return grainSize;
+    }
+
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+}
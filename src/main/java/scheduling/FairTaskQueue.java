@@ -0,0 +1,114 @@
+package scheduling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending work, ordered by priority class and then by weighted fair queuing across tenants.
+ * Within a class each tenant has a FIFO and a virtual time that advances by cost / weight
+ * whenever one of its units is served; the backlogged tenant with the lowest virtual time goes next.
+ * A tenant that was idle restarts no earlier than the class clock, so it cannot bank credit while away.
+ * Not thread-safe: the executor guards it with its dispatch lock.
+ */
+class FairTaskQueue {
+
+    static final String DEFAULT_TENANT = "default";
+
+    private static class TenantQueue {
+        final ArrayDeque<PendingTask> tasks = new ArrayDeque<>();
+        double virtualTime;
+    }
+
+    private static class ClassQueue {
+        final Map<String, TenantQueue> tenants = new HashMap<>();
+        double clock; // Virtual time of the unit served last
+    }
+
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final EnumMap<Priority, ClassQueue> classes = new EnumMap<>(Priority.class);
+    private int size = 0;
+
+    FairTaskQueue() {
+        for (Priority priority : Priority.values()) {
+            classes.put(priority, new ClassQueue());
+        }
+    }
+
+    void setWeight(String tenant, int weight) {
+        weights.put(tenant, weight);
+    }
+
+    void add(Priority priority, String tenant, PendingTask task) {
+        ClassQueue queue = classes.get(priority);
+        TenantQueue tenantQueue = queue.tenants.computeIfAbsent(tenant, t -> new TenantQueue());
+        if (tenantQueue.tasks.isEmpty()) {
+            tenantQueue.virtualTime = Math.max(tenantQueue.virtualTime, queue.clock);
+        }
+        tenantQueue.tasks.addLast(task);
+        size++;
+    }
+
+    /**
+     * Next unit to run, or null if nothing is pending.
+     */
+    PendingTask poll() {
+        for (ClassQueue queue : classes.values()) {
+            String nextTenant = null;
+            TenantQueue next = null;
+            Iterator<Map.Entry<String, TenantQueue>> it = queue.tenants.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, TenantQueue> entry = it.next();
+                TenantQueue candidate = entry.getValue();
+                if (candidate.tasks.isEmpty()) {
+                    if (candidate.virtualTime <= queue.clock) {
+                        // An idle tenant that is not ahead of the clock carries no information
+                        it.remove();
+                    }
+                    continue;
+                }
+                if (next == null || candidate.virtualTime < next.virtualTime) {
+                    nextTenant = entry.getKey();
+                    next = candidate;
+                }
+            }
+            if (next == null) {
+                continue;
+            }
+            PendingTask task = next.tasks.pollFirst();
+            queue.clock = Math.max(queue.clock, next.virtualTime);
+            next.virtualTime += (double) Math.max(1, task.cost) / weights.getOrDefault(nextTenant, 1);
+            size--;
+            return task;
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove and return everything still pending.
+     */
+    List<PendingTask> drain() {
+        List<PendingTask> drained = new ArrayList<>();
+        for (ClassQueue queue : classes.values()) {
+            Iterator<TenantQueue> it = queue.tenants.values().iterator();
+            while (it.hasNext()) {
+                drained.addAll(it.next().tasks);
+                it.remove();
+            }
+        }
+        size = 0;
+        return drained;
+    }
+}
@@ -0,0 +1,37 @@
+package scheduling;
+
+/**
+ * Decides how a worker's past work turns into the load behind its fatigue
+ * (fatigue = fatigueFactor * load, in nanoseconds of work).
+ * The policy is stateless; each worker keeps its own load and the time it was last updated.
+ */
+public interface FatiguePolicy {
+
+    /**
+     * The load after a task of workNanos finished at nowNanos,
+     * given the load last updated at lastUpdateNanos.
+     */
+    double accumulate(double load, long lastUpdateNanos, long nowNanos, long workNanos);
+
+    /**
+     * The load as seen at nowNanos, given the load last updated at lastUpdateNanos.
+     * Policies must decay every worker's load by the same factor over the same period,
+     * so that the order of idle workers in the executor's heap never changes while they wait.
+     */
+    double current(double load, long lastUpdateNanos, long nowNanos);
+
+    /**
+     * The original scheme: every nanosecond ever worked counts forever.
+     */
+    static FatiguePolicy lifetime() {
+        return LifetimeFatiguePolicy.INSTANCE;
+    }
+
+    /**
+     * Exponentially weighted history: work done halfLifeMillis ago counts half as much as work done now,
+     * so load balancing follows recent conditions in a long-running pool.
+     */
+    static FatiguePolicy exponentialDecay(long halfLifeMillis) {
+        return new DecayingFatiguePolicy(halfLifeMillis);
+    }
+}
@@ -0,0 +1,193 @@
+package scheduling;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs batches on a ForkJoinPool.
+ * Each batch is split in halves recursively until a range holds at most grainSize tasks,
+ * so idle workers balance the load by stealing the larger halves that are still waiting.
+ * There is no fatigue model here; the report shows the pool's own counters instead.
+ */
+public class ForkJoinExecutor implements BatchExecutor {
+
+    private static final int RANGES_PER_WORKER = 8; // Used to pick the grain when none is given
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ForkJoinPool pool;
+    private final int grainSize; // 0 means chosen per batch
+    private final TraceRecorder tracer; // null when not tracing
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong tasksRun = new AtomicLong();
+    private final AtomicLong leafRanges = new AtomicLong();
+
+    public ForkJoinExecutor(int numThreads) {
+        this(numThreads, 0);
+    }
+
+    /**
+     * @param grainSize largest range of tasks run without splitting further; 0 picks one per batch
+     */
+    public ForkJoinExecutor(int numThreads, int grainSize) {
+        this(numThreads, grainSize, null);
+    }
+
+    /**
+     * @param tracer timeline that gets one slice per leaf range, or null
+     */
+    public ForkJoinExecutor(int numThreads, int grainSize, TraceRecorder tracer) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("numThreads should be bigger than 0");
+        }
+        if (grainSize < 0) {
+            throw new IllegalArgumentException("grainSize can't be negative");
+        }
+        this.pool = new ForkJoinPool(numThreads);
+        this.grainSize = grainSize;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void submitAll(Iterable<Runnable> tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks can't be null");
+        }
+        List<Runnable> batch = new ArrayList<>();
+        for (Runnable task : tasks) {
+            if (task == null) {
+                throw new IllegalArgumentException("Task can't be null");
+            }
+            batch.add(task);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int grain = grainSize > 0 ? grainSize
+                : Math.max(1, batch.size() / (pool.getParallelism() * RANGES_PER_WORKER));
+        BatchEvent event = new BatchEvent();
+        event.begin();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        pool.invoke(new RowRange(this, batch, 0, batch.size(), grain, failure));
+        long id = batches.incrementAndGet();
+        event.end();
+        if (event.shouldCommit()) {
+            event.batchId = id;
+            event.executor = Backend.FORK_JOIN.toString();
+            event.tasks = batch.size();
+            event.failed = failure.get() != null;
+            event.commit();
+        }
+        tasksRun.addAndGet(batch.size());
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * A contiguous range of the batch; forks its halves until it is no bigger than the grain.
+     * A task that throws a RuntimeException doesn't cancel its siblings: the first one is kept
+     * for submitAll to rethrow, later ones are attached to it as suppressed.
+     */
+    @SuppressWarnings("serial") // Never serialized
+    private static final class RowRange extends RecursiveAction {
+        private final ForkJoinExecutor executor;
+        private final List<Runnable> tasks;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final AtomicReference<RuntimeException> failure;
+
+        RowRange(ForkJoinExecutor executor, List<Runnable> tasks, int from, int to, int grain,
+                 AtomicReference<RuntimeException> failure) {
+            this.executor = executor;
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                executor.leafRanges.incrementAndGet();
+                long start = System.nanoTime();
+                for (int i = from; i < to; i++) {
+                    try {
+                        tasks.get(i).run();
+                    } catch (RuntimeException e) {
+                        if (!failure.compareAndSet(null, e) && failure.get() != e) {
+                            failure.get().addSuppressed(e);
+                        }
+                    }
+                }
+                TraceRecorder tracer = executor.tracer;
+                if (tracer != null) {
+                    int lane = Thread.currentThread() instanceof ForkJoinWorkerThread worker
+                            ? TraceRecorder.workerLane(worker.getPoolIndex()) : TraceRecorder.ENGINE_LANE;
+                    tracer.nameLane(lane, Thread.currentThread().getName());
+                    tracer.record("range", "task", lane, start, System.nanoTime(), Map.of("from", from, "to", to));
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RowRange(executor, tasks, from, mid, grain, failure),
+                    new RowRange(executor, tasks, mid, to, grain, failure));
+        }
+    }
+
+    public int getGrainSize() {
+        return grainSize;
+    }
+
+    @Override
+    public synchronized String getWorkerReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("============== WORKER REPORT ==============\n");
+        sb.append("Backend: ").append(Backend.FORK_JOIN)
+                .append(" | Parallelism: ").append(pool.getParallelism())
+                .append(" | Grain: ").append(grainSize > 0 ? String.valueOf(grainSize) : "auto")
+                .append("\n");
+        sb.append("Batches: ").append(batches.get())
+                .append(" | Tasks: ").append(tasksRun.get())
+                .append(" | Leaf Ranges: ").append(leafRanges.get())
+                .append(" | Steals: ").append(pool.getStealCount())
+                .append("\n");
+        sb.append("------------------------------------------\n");
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized String getWorkerReportJson() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("backend", Backend.FORK_JOIN.toString());
+        report.put("parallelism", pool.getParallelism());
+        report.put("grainSize", grainSize > 0 ? grainSize : null);
+        report.put("batches", batches.get());
+        report.put("tasks", tasksRun.get());
+        report.put("leafRanges", leafRanges.get());
+        report.put("steals", pool.getStealCount());
+        try {
+            return JSON.writeValueAsString(report);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write the worker report", e);
+        }
+    }
+
+    @Override
+    public void shutdown() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,30 @@
+package scheduling;
+
+/**
+ * Single-slot channel through which a worker receives its next task.
+ * Only the owning worker ever takes from it; any thread may offer.
+ */
+interface Handoff {
+
+    /**
+     * Place a task in the slot without blocking.
+     * Returns false if the slot is already occupied.
+     */
+    boolean offer(Runnable task);
+
+    /**
+     * Wait until a task is available and remove it from the slot.
+     */
+    Runnable take() throws InterruptedException;
+
+    /**
+     * Like take(), but gives up after timeoutNanos and returns null.
+     */
+    Runnable poll(long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Remove whatever is in the slot without waiting.
+     * Returns null if the slot is empty.
+     */
+    Runnable clear();
+}
@@ -0,0 +1,23 @@
+package scheduling;
+
+class LifetimeFatiguePolicy implements FatiguePolicy {
+
+    static final LifetimeFatiguePolicy INSTANCE = new LifetimeFatiguePolicy();
+
+    private LifetimeFatiguePolicy() {}
+
+    @Override
+    public double accumulate(double load, long lastUpdateNanos, long nowNanos, long workNanos) {
+        return load + workNanos;
+    }
+
+    @Override
+    public double current(double load, long lastUpdateNanos, long nowNanos) {
+        return load;
+    }
+
+    @Override
+    public String toString() {
+        return "lifetime";
+    }
+}
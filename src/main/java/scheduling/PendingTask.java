@@ -0,0 +1,23 @@
+package scheduling;
+
+/**
+ * A unit of work waiting in the executor's queue: a task or a slice of a batch,
+ * how many tasks it holds, its cost for fair queuing, and the worker it was planned for (may be null).
+ */
+class PendingTask {
+
+    final Runnable task;
+    final int size; // Tasks in the unit, each holding a slot of the queue's capacity
+    final long cost;
+    final TiredThread preferred;
+    final TaskBatch batch; // Batch to fail if the unit is dropped at shutdown, null for a plain submit
+    final long queuedAt = System.nanoTime();
+
+    PendingTask(Runnable task, int size, long cost, TiredThread preferred, TaskBatch batch) {
+        this.task = task;
+        this.size = size;
+        this.cost = cost;
+        this.preferred = preferred;
+        this.batch = batch;
+    }
+}
@@ -0,0 +1,12 @@
+package scheduling;
+
+/**
+ * Priority class of a submitted batch. Classes are served strictly in this order:
+ * queued INTERACTIVE work always goes before NORMAL, and NORMAL before BATCH.
+ * Within a class, tenants share the workers in proportion to their weights.
+ */
+public enum Priority {
+    INTERACTIVE,
+    NORMAL,
+    BATCH
+}
@@ -0,0 +1,34 @@
+package scheduling;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default handoff: a blocking queue of capacity one.
+ * Every wake-up goes through the queue's lock and condition.
+ */
+class QueueHandoff implements Handoff {
+
+    private final BlockingQueue<Runnable> slot = new ArrayBlockingQueue<>(1);
+
+    @Override
+    public boolean offer(Runnable task) {
+        return slot.offer(task);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        return slot.take();
+    }
+
+    @Override
+    public Runnable poll(long timeoutNanos) throws InterruptedException {
+        return slot.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Runnable clear() {
+        return slot.poll();
+    }
+}
@@ -0,0 +1,11 @@
+package scheduling;
+
+/**
+ * Determines how a TiredExecutor hands tasks to its workers.
+ * In HANDOFF mode the submitter waits for the least tired idle worker and passes it one task at a time.
+ * In WORK_STEALING mode tasks are dealt in bulk into per-worker deques, and idle workers steal from busy ones.
+ */
+public enum SchedulingMode {
+    HANDOFF,
+    WORK_STEALING
+}
@@ -0,0 +1,84 @@
+package scheduling;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Low-latency handoff: a volatile single-slot mailbox.
+ * The taker spins for a bounded number of iterations before parking,
+ * so a task that arrives shortly after the previous one finished is picked up
+ * without a lock acquire or a kernel wake-up.
+ */
+class SpinParkHandoff implements Handoff {
+
+    // Spins before falling back to park; on a single CPU spinning only delays the thread we are waiting for
+    static final int SPIN_LIMIT = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 12 : 0;
+
+    private final AtomicReference<Runnable> slot = new AtomicReference<>();
+    private volatile Thread waiter = null; // Set only while the taker is about to park
+
+    @Override
+    public boolean offer(Runnable task) {
+        if (!slot.compareAndSet(null, task)) {
+            return false;
+        }
+        // The taker publishes itself before its last check of the slot, so either it sees the task or we see it
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+        return true;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        return await(Long.MAX_VALUE);
+    }
+
+    @Override
+    public Runnable poll(long timeoutNanos) throws InterruptedException {
+        return await(timeoutNanos);
+    }
+
+    @Override
+    public Runnable clear() {
+        return slot.getAndSet(null);
+    }
+
+    /**
+     * Spin, then park until a task arrives or the timeout expires (Long.MAX_VALUE means no timeout).
+     */
+    private Runnable await(long timeoutNanos) throws InterruptedException {
+        for (int i = 0; i < SPIN_LIMIT; i++) {
+            Runnable task = slot.getAndSet(null);
+            if (task != null) {
+                return task;
+            }
+            Thread.onSpinWait();
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        waiter = Thread.currentThread();
+        try {
+            while (true) {
+                Runnable task = slot.getAndSet(null);
+                if (task != null) {
+                    return task;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timeoutNanos == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package scheduling;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Completion tracker for a single batch of tasks.
+ * The batch counts its tasks. Each part of the batch (a slice in handoff mode, a task in work-stealing mode)
+ * counts down its tasks once, whether it finished normally or not; the last one completes the future.
+ * Batches are independent of each other, so concurrent submitters never wait on one another.
+ * A task that throws fails the batch, not the worker: the first exception is kept
+ * (later ones are attached as suppressed) and the future completes exceptionally with it.
+ * Every task also records how long it waited since the batch was created and how long it ran.
+ */
+class TaskBatch {
+
+    private final AtomicInteger remaining;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final Consumer<TaskBatch> onFinish; // Runs before the future completes, may be null
+    private final long createdAt = System.nanoTime();
+    // Created by the first task that runs (about 15 KB together), so batches that never run a task cost nothing
+    private volatile LatencyHistogram queueWait;
+    private volatile LatencyHistogram runTime;
+
+    private static final LatencyHistogram EMPTY = new LatencyHistogram(); // Read-only, for batches that ran nothing
+
+    TaskBatch(int tasks) {
+        this(tasks, null);
+    }
+
+    TaskBatch(int tasks, Consumer<TaskBatch> onFinish) {
+        this.remaining = new AtomicInteger(tasks);
+        this.onFinish = onFinish;
+        if (tasks == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Wrap a single task as a part of the batch, so it records failures and counts down when it is done.
+     * RuntimeExceptions are swallowed here so the worker survives;
+     * Errors are recorded and rethrown, leaving the worker to its supervisor.
+     */
+    Runnable track(Runnable task) {
+        return trackPart(() -> runCapturing(task), 1);
+    }
+
+    /**
+     * Wrap several tasks as one part of the batch, run back to back; one bad task does not skip its neighbours.
+     */
+    Runnable trackAll(List<Runnable> tasks) {
+        return trackPart(() -> {
+            for (Runnable task : tasks) {
+                runCapturing(task);
+            }
+        }, tasks.size());
+    }
+
+    /**
+     * Wrap a part that runs its tasks through runCapturing itself; counts down all of them when it is done.
+     */
+    Runnable trackPart(Runnable part, int tasks) {
+        return () -> {
+            try {
+                part.run();
+            } catch (Error e) {
+                fail(e);
+                throw e;
+            } finally {
+                // The worker's totals must include this part before the batch can complete
+                TiredThread.taskDone();
+                if (remaining.addAndGet(-tasks) == 0) {
+                    finish();
+                }
+            }
+        };
+    }
+
+    /**
+     * Run one task of the batch, recording a RuntimeException instead of letting it escape,
+     * along with the task's wait and run time.
+     */
+    void runCapturing(Runnable task) {
+        long start = System.nanoTime();
+        if (runTime == null) {
+            createHistograms();
+        }
+        queueWait.record(start - createdAt);
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            runTime.record(System.nanoTime() - start);
+        }
+    }
+
+    private synchronized void createHistograms() {
+        if (runTime == null) {
+            queueWait = new LatencyHistogram();
+            runTime = new LatencyHistogram(); // Written last: seeing it set means both are
+        }
+    }
+
+    LatencyHistogram getQueueWait() {
+        LatencyHistogram histogram = queueWait;
+        return histogram == null ? EMPTY : histogram;
+    }
+
+    LatencyHistogram getRunTime() {
+        LatencyHistogram histogram = runTime;
+        return histogram == null ? EMPTY : histogram;
+    }
+
+    /**
+     * Give up on the batch without waiting for its remaining parts, e.g. when they are dropped at shutdown.
+     */
+    void abort(Throwable cause) {
+        fail(cause);
+        finish();
+    }
+
+    /**
+     * Complete the future once, with the first failure if there was one.
+     * The listener runs first, so whatever it records is visible to the waiting submitter.
+     */
+    private void finish() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        if (onFinish != null) {
+            onFinish.accept(this);
+        }
+        Throwable cause = failure.get();
+        if (cause == null) {
+            done.complete(null);
+        } else {
+            done.completeExceptionally(cause);
+        }
+    }
+
+    boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    private void fail(Throwable cause) {
+        if (!failure.compareAndSet(null, cause)) {
+            Throwable first = failure.get();
+            if (first != cause) {
+                first.addSuppressed(cause);
+            }
+        }
+    }
+
+    /**
+     * Handle given to the submitter. Completing or cancelling it does not affect the batch itself.
+     */
+    CompletableFuture<Void> handle() {
+        return done.copy();
+    }
+
+    /**
+     * Wait for the batch; rethrows the first task failure, if any.
+     */
+    void await() throws InterruptedException {
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Batch failed", cause);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package scheduling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one task (or handoff slice) run by a TiredThread.
+ */
+@Name("scheduling.TaskExecution")
+@Label("Task Execution")
+@Category({"Linear Algebra Engine", "Scheduling"})
+@Description("A task run by a TiredThread worker")
+@StackTrace(false)
+class TaskExecutionEvent extends Event {
+
+    @Label("Worker Id")
+    int workerId;
+
+    @Label("Fatigue Factor")
+    double fatigueFactor;
+
+    @Label("Fatigue Before")
+    double fatigue;
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait = -1; // -1 when the task wasn't stamped by an executor
+
+    @Label("Handoff Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long handoffLatency = -1;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,99 @@
+package scheduling;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits a batch into one bin per worker.
+ * Workers are given least tired first, and bin i is meant for worker i.
+ */
+class TaskPartitioner {
+
+    private TaskPartitioner() {}
+
+    /**
+     * Picks the split from the batch's cost estimates.
+     * The engine's row tasks always cost the same within a node (matrices are dense, so every row
+     * does the same work), so engine batches get weightedContiguous and gain nothing from longestFirst;
+     * longest-first only pays off for callers that submit CostedTasks of different sizes.
+     */
+    static List<List<Runnable>> partition(List<Runnable> batch, TiredThread[] workers) {
+        boolean costed = false;
+        boolean uneven = false;
+        for (Runnable task : batch) {
+            costed |= task instanceof CostedTask;
+            uneven |= CostedTask.costOf(task) != CostedTask.costOf(batch.get(0));
+        }
+        if (!costed) {
+            return contiguous(batch, workers.length);
+        }
+        // Equal costs leave longest-first nothing to sort by; ranges balance as well and keep rows together
+        return uneven ? longestFirst(batch, workers) : weightedContiguous(batch, workers);
+    }
+
+    /**
+     * Without cost estimates: equal contiguous chunks, which keeps neighbouring rows together.
+     */
+    static List<List<Runnable>> contiguous(List<Runnable> batch, int bins) {
+        int chunks = Math.min(bins, batch.size());
+        List<List<Runnable>> result = new ArrayList<>(bins);
+        for (int c = 0; c < bins; c++) {
+            result.add(c < chunks
+                    ? batch.subList(c * batch.size() / chunks, (c + 1) * batch.size() / chunks)
+                    : List.of());
+        }
+        return result;
+    }
+
+    /**
+     * Equal-cost tasks in contiguous ranges, each sized in proportion to its worker's speed (1 / fatigueFactor).
+     */
+    static List<List<Runnable>> weightedContiguous(List<Runnable> batch, TiredThread[] workers) {
+        double total = 0;
+        for (TiredThread worker : workers) {
+            total += 1 / worker.getFatigueFactor();
+        }
+        List<List<Runnable>> result = new ArrayList<>(workers.length);
+        double share = 0;
+        int from = 0;
+        for (int b = 0; b < workers.length; b++) {
+            share += 1 / workers[b].getFatigueFactor();
+            int to = b == workers.length - 1 ? batch.size() : (int) Math.round(batch.size() * share / total);
+            result.add(batch.subList(from, to));
+            from = to;
+        }
+        return result;
+    }
+
+    /**
+     * Longest-processing-time first: tasks in decreasing cost order, each to the bin
+     * that would end up with the lowest fatigueFactor * assigned cost.
+     * Within a bin the largest tasks come first, so thieves (which steal from the tail) take small ones.
+     */
+    static List<List<Runnable>> longestFirst(List<Runnable> batch, TiredThread[] workers) {
+        List<Runnable> sorted = new ArrayList<>(batch);
+        sorted.sort(Comparator.comparingLong(CostedTask::costOf).reversed());
+        List<List<Runnable>> result = new ArrayList<>(workers.length);
+        double[] load = new double[workers.length];
+        for (int b = 0; b < workers.length; b++) {
+            result.add(new ArrayList<>());
+        }
+        for (Runnable task : sorted) {
+            long cost = CostedTask.costOf(task);
+            int best = 0;
+            double bestFinish = Double.MAX_VALUE;
+            for (int b = 0; b < workers.length; b++) {
+                // Ties go to the earlier (less tired) worker
+                double finish = (load[b] + cost) * workers[b].getFatigueFactor();
+                if (finish < bestFinish) {
+                    bestFinish = finish;
+                    best = b;
+                }
+            }
+            load[best] += cost;
+            result.get(best).add(task);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package scheduling;
+
+/**
+ * A task stamped with when it was queued and when it was given to a specific worker,
+ * so the worker can record queue wait and handoff latency as it starts the task.
+ * A task that belongs to a batch also names it, so the batch can be aborted if the task is dropped,
+ * along with how many queued tasks it stands for.
+ */
+final class TimedTask implements Runnable {
+
+    final Runnable task;
+    final long queuedAt;
+    final long assignedAt;
+    final TaskBatch batch; // null for a task submitted on its own
+    final int size; // Queued tasks it runs: a whole slice in handoff mode
+
+    TimedTask(Runnable task, long queuedAt, long assignedAt) {
+        this(task, queuedAt, assignedAt, null, 1);
+    }
+
+    TimedTask(Runnable task, long queuedAt, long assignedAt, TaskBatch batch, int size) {
+        this.task = task;
+        this.queuedAt = queuedAt;
+        this.assignedAt = assignedAt;
+        this.batch = batch;
+        this.size = size;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+}
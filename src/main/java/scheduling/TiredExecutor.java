@@ -1,102 +1,888 @@
 package scheduling;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class TiredExecutor implements BatchExecutor {
 
-public class TiredExecutor {
+    private static final ObjectMapper JSON = new ObjectMapper();
 
-    private final TiredThread[] workers;
+    // Copy-on-write; replaced under poolLock whenever an elastic pool grows or shrinks
+    private volatile TiredThread[] workers = new TiredThread[0];
+    private final int initialThreads;
+    private volatile boolean started = false; // Set under poolLock once the initial workers run
     private final PriorityBlockingQueue<TiredThread> idleMinHeap = new PriorityBlockingQueue<>();
-    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final ExecutorOptions options;
+    private final SchedulingMode mode;
+    private final boolean virtualThreads;
+    private final boolean spinHandoff;
+    private final int minThreads;
+    private final int maxThreads;
+
+    private static final int SLICES_PER_WORKER = 4; // Queue units per worker and batch in handoff mode
+
+    private final Object dispatchLock = new Object(); // Guards the pending queue and every handoff from it
+    private final FairTaskQueue pending = new FairTaskQueue();
+
+    // Tasks (or handoff slices) accepted but not started yet, in both modes
+    private final int queueCapacity;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Object roomLock = new Object(); // Submitters waiting for queue room wait on this
+    private volatile int roomWaiters = 0;
+
+    private static final int RECENT_BATCHES = 8; // Finished batches kept for the report
+
+    private final AtomicLong batchIds = new AtomicLong();
+    private final ArrayDeque<BatchLatency> recentBatches = new ArrayDeque<>(); // Oldest first, guarded by itself
+
+    private final Object poolLock = new Object(); // Guards pool changes and the fields below
+    private int nextWorkerId = 0;
+    private volatile boolean shuttingDown = false;
+    private int retiredCount = 0;
+    private double retiredFatigue = 0;
+    private long retiredTimeUsed = 0;
+    private long retiredTimeIdle = 0;
+    private int replacedCount = 0;
 
     public TiredExecutor(int numThreads) {
+        this(numThreads, new ExecutorOptions());
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode) {
+        this(numThreads, new ExecutorOptions().mode(mode));
+    }
+
+    public TiredExecutor(int numThreads, ExecutorOptions options) {
         // TODO
         if (numThreads <= 0) {
             throw new IllegalArgumentException("numThreads should be bigger than 0");
         }
-        workers = new TiredThread[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            double factor = 0.5 + Math.random();
-            workers[i] = new TiredThread(i, factor);
-            workers[i].start();
-            idleMinHeap.add(workers[i]);
+        if (options == null) {
+            throw new IllegalArgumentException("options can't be null");
+        }
+        this.options = options.copy();
+        this.mode = options.getMode();
+        this.virtualThreads = options.useVirtualThreads();
+        this.spinHandoff = options.useSpinHandoff();
+        this.queueCapacity = options.getQueueCapacity();
+        if (options.isElastic()) {
+            if (numThreads < options.getMinThreads() || numThreads > options.getMaxThreads()) {
+                throw new IllegalArgumentException("numThreads should be between minThreads and maxThreads");
+            }
+            this.minThreads = options.getMinThreads();
+            this.maxThreads = options.getMaxThreads();
+        } else {
+            this.minThreads = numThreads;
+            this.maxThreads = numThreads;
+        }
+        this.initialThreads = numThreads;
+    }
+
+    /**
+     * Build and start the initial workers on first use. Not done in the constructor,
+     * since the workers call back into the executor and must never see it half-constructed.
+     */
+    private void ensureStarted() {
+        if (started) {
+            return;
+        }
+        synchronized (poolLock) {
+            if (started || shuttingDown) {
+                return;
+            }
+            TiredThread[] initial = new TiredThread[initialThreads];
+            for (int i = 0; i < initialThreads; i++) {
+                initial[i] = newWorker(0);
+            }
+            workers = initial;
+            // Start only once the array is full, so stealing workers never see a half-built pool
+            for (TiredThread worker : initial) {
+                startWorker(worker);
+                if (mode == SchedulingMode.HANDOFF) {
+                    idleMinHeap.add(worker);
+                }
+            }
+            started = true;
+        }
+    }
+
+    public SchedulingMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Number of live workers; changes over time only for an elastic pool.
+     * Before the first task starts the workers, the number the pool will start with.
+     */
+    public int getPoolSize() {
+        return started ? workers.length : initialThreads;
+    }
+
+    private TiredThread newWorker(double inheritedFatigue) {
+        double factor = 0.5 + Math.random();
+        return new TiredThread(nextWorkerId++, factor, this, options, inheritedFatigue);
+    }
+
+    private void startWorker(TiredThread worker) {
+        if (virtualThreads) {
+            worker.startVirtual();
+        } else {
+            worker.start();
+        }
+    }
+
+    /**
+     * Add one worker if the pool is below its maximum.
+     * The newcomer starts at the pool's average fatigue, so it is neither flooded nor ignored.
+     * Returns the started worker, or null if the pool is already full or shutting down.
+     * The worker is not put in the idle heap; callers decide what it does first.
+     */
+    private TiredThread tryGrow() {
+        synchronized (poolLock) {
+            TiredThread[] current = workers;
+            if (shuttingDown || current.length >= maxThreads) {
+                return null;
+            }
+            double totalFatigue = 0;
+            for (TiredThread worker : current) {
+                totalFatigue += worker.getFatigue();
+            }
+            TiredThread worker = newWorker(current.length == 0 ? 0 : totalFatigue / current.length);
+            TiredThread[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = worker;
+            workers = grown;
+            startWorker(worker);
+            return worker;
+        }
+    }
+
+    /**
+     * Grow an elastic pool so that a batch of pendingTasks has a worker per task, up to maxThreads.
+     */
+    private void growFor(int pendingTasks) {
+        int wanted = Math.min(maxThreads, pendingTasks);
+        while (workers.length < wanted) {
+            TiredThread worker = tryGrow();
+            if (worker == null) {
+                return;
+            }
+            if (mode == SchedulingMode.HANDOFF) {
+                idleMinHeap.add(worker);
+            }
+        }
+    }
+
+    /**
+     * Called by a worker that stayed idle for a whole idle timeout.
+     * Retires it if the pool is above its minimum and the worker has nothing left to do;
+     * its history is folded into the retired totals shown in the report.
+     */
+    boolean tryRetire(TiredThread worker) {
+        synchronized (poolLock) {
+            TiredThread[] current = workers;
+            if (shuttingDown || current.length <= minThreads) {
+                return false;
+            }
+            // In handoff mode a failed removal means a submitter just took this worker to give it a task
+            if (mode == SchedulingMode.WORK_STEALING ? worker.hasLocalTasks() : !idleMinHeap.remove(worker)) {
+                return false;
+            }
+            worker.retire();
+            List<TiredThread> remaining = new ArrayList<>(Arrays.asList(current));
+            remaining.remove(worker);
+            workers = remaining.toArray(new TiredThread[0]);
+            retiredCount++;
+            retiredFatigue += worker.getFatigue();
+            retiredTimeUsed += worker.getTimeUsed();
+            retiredTimeIdle += worker.getTimeIdle();
+            return true;
         }
     }
 
+    /**
+     * Queue a single task without waiting for it to run (NORMAL priority, default tenant).
+     * If the queue is at capacity, waits until there is room; if interrupted meanwhile,
+     * the task is rejected with IllegalStateException and the interrupt flag is kept.
+     * A task that throws here has no batch to report to: it kills its worker,
+     * which the executor then replaces.
+     */
     public void submit(Runnable task) {
         // TODO
         if(task == null){
             throw new IllegalArgumentException("Task can't be null");
         }
-        TiredThread currThread;
-        try{
-            currThread = idleMinHeap.take();
-        }catch(InterruptedException e){
-            System.err.println("[TiredExecutor] Submit interrupted: " + e.getMessage());
-                return;
+        try {
+            awaitRoom(1, Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            throw new IllegalStateException("Interrupted while waiting for queue room", e);
+        }
+        enqueue(task);
+    }
+
+    /**
+     * Like submit(task), but gives up once the queue has stayed full for the timeout.
+     * Returns false if the task was not accepted.
+     */
+    public boolean submit(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        if (task == null || unit == null) {
+            throw new IllegalArgumentException("Task and unit can't be null");
+        }
+        if (awaitRoom(1, unit.toNanos(timeout)) == 0) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        enqueue(task);
+        return true;
+    }
+
+    /**
+     * Queue a task only if there is room right now; returns false without waiting otherwise.
+     * Callers that get false should shed or defer the work.
+     */
+    public boolean trySubmit(Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task can't be null");
+        }
+        checkRunning();
+        if (tryReserve(1) == 0) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        enqueue(task);
+        return true;
+    }
+
+    private void checkRunning() {
+        if (shuttingDown) {
+            throw new IllegalStateException("Executor was shut down");
+        }
+    }
+
+    /**
+     * Reserve between 1 and units queue slots, waiting up to timeoutNanos for at least one to free up.
+     * Returns the number reserved, 0 on timeout.
+     */
+    private int awaitRoom(int units, long timeoutNanos) throws InterruptedException {
+        checkRunning();
+        int reserved = tryReserve(units);
+        if (reserved > 0) {
+            return reserved;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (roomLock) {
+            roomWaiters++;
+            try {
+                // Registered as a waiter before checking again, so a slot freed in between is not missed
+                while ((reserved = tryReserve(units)) == 0) {
+                    checkRunning();
+                    if (timeoutNanos == Long.MAX_VALUE) {
+                        roomLock.wait();
+                        continue;
+                    }
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) {
+                        return 0;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(roomLock, left);
+                }
+                return reserved;
+            } finally {
+                roomWaiters--;
+            }
         }
-        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Reserve as many of units queue slots as are free right now; returns how many.
+     */
+    private int tryReserve(int units) {
+        while (true) {
+            int depth = queued.get();
+            int room = Math.min(units, queueCapacity - depth);
+            if (room <= 0) {
+                return 0;
+            }
+            if (queued.compareAndSet(depth, depth + room)) {
+                peakQueued.accumulateAndGet(depth + room, Math::max);
+                return room;
+            }
+        }
+    }
+
+    /**
+     * Reserve room for the next parts of a batch, waiting until there is room for at least one.
+     * If the submitter is interrupted or the executor shuts down meanwhile, aborts the batch and returns 0;
+     * parts already queued still run.
+     */
+    private int reserveFor(int units, TaskBatch batch) {
         try {
-            Runnable wrappedTask = () -> {
-                try {
-                    task.run();
-                } finally {
-                    synchronized (this){
-                        idleMinHeap.add(currThread);
-                        if(inFlight.decrementAndGet() == 0){
-                            this.notifyAll();
-                        }
+            return awaitRoom(units, Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.abort(e);
+        } catch (IllegalStateException e) {
+            batch.abort(e);
+        }
+        return 0;
+    }
+
+    /**
+     * Called as each queued unit starts running or is dropped, with the number of tasks it holds;
+     * wakes submitters waiting for room.
+     */
+    private void leftQueue(int tasks) {
+        if (queued.addAndGet(-tasks) < queueCapacity && roomWaiters > 0) {
+            synchronized (roomLock) {
+                roomLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Work-stealing mode: wrap a task for a worker's deque. Queued and assigned at the same moment,
+     * since the deque belongs to one worker (a thief's handoff latency includes the time before the steal).
+     */
+    private Runnable stamped(Runnable task, long queuedAt, TaskBatch batch) {
+        return new TimedTask(() -> {
+            leftQueue(1);
+            task.run();
+        }, queuedAt, queuedAt, batch, 1);
+    }
+
+    private void enqueue(Runnable task) {
+        ensureStarted();
+        if (mode == SchedulingMode.WORK_STEALING) {
+            TiredThread target;
+            // Under the pool lock so the target cannot be retired between choosing it and queueing
+            synchronized (poolLock) {
+                target = workersByFatigue()[0];
+                target.enqueueLocal(stamped(task, System.nanoTime(), null));
+            }
+            target.wakeUp();
+            return;
+        }
+        synchronized (dispatchLock) {
+            pending.add(Priority.NORMAL, FairTaskQueue.DEFAULT_TENANT,
+                    new PendingTask(task, 1, CostedTask.costOf(task), null, null));
+        }
+        pump();
+    }
+
+    /**
+     * Tasks accepted but not started yet, in either mode.
+     * In handoff mode a slice's tasks all leave the queue when the slice starts.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Deepest the queue has been since the executor started.
+     */
+    public int getPeakQueueDepth() {
+        return peakQueued.get();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Tasks refused by trySubmit or a timed submit because the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+    /**
+     * Set a tenant's share within each priority class (handoff mode). Tenants default to weight 1;
+     * a tenant with weight 3 gets three times the work of a weight-1 tenant while both are backlogged.
+     */
+    public void setTenantWeight(String tenant, int weight) {
+        if (tenant == null) {
+            throw new IllegalArgumentException("tenant can't be null");
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight should be bigger than 0");
+        }
+        synchronized (dispatchLock) {
+            pending.setWeight(tenant, weight);
+        }
+    }
+
+    /**
+     * Give queued work to idle workers until either runs out.
+     * Called whenever work is queued or a worker becomes idle, always under the dispatch lock,
+     * so a unit can never be left in the queue while a worker sits idle.
+     * The queue picks which unit goes next; the idle heap still picks which worker runs it,
+     * preferring the worker the unit was planned for if that one is idle.
+     */
+    private void pump() {
+        synchronized (dispatchLock) {
+            while (!pending.isEmpty() && !shuttingDown) {
+                TiredThread worker = idleMinHeap.poll();
+                if (worker == null) {
+                    // Every worker is busy: that is a backlog, so an elastic pool grows
+                    worker = tryGrow();
+                    if (worker == null) {
+                        return;
                     }
                 }
-            };
-            currThread.newTask(wrappedTask);
-        } catch (IllegalStateException e){
-            synchronized (this){
-                inFlight.decrementAndGet();
-                idleMinHeap.add(currThread);
-                this.notifyAll();
+                PendingTask next = pending.poll();
+                if (next.preferred != null && next.preferred != worker && idleMinHeap.remove(next.preferred)) {
+                    idleMinHeap.add(worker);
+                    worker = next.preferred;
+                }
+                try {
+                    handOff(worker, next);
+                } catch (IllegalStateException e) {
+                    // Only happens while shutting down
+                    abandon(next, e);
+                    return;
+                }
             }
-           throw e;
         }
     }
 
+    /**
+     * Give a task to a worker that has just been taken out of the idle heap.
+     * Once the task is done the worker goes back into the heap and picks up any queued work.
+     */
+    private void handOff(TiredThread worker, PendingTask unit) {
+        worker.newTask(new TimedTask(() -> {
+            leftQueue(unit.size);
+            unit.task.run();
+            // Only a worker that survived its task goes back to the heap; a dead one is replaced instead
+            idleMinHeap.add(worker);
+            pump();
+        }, unit.queuedAt, System.nanoTime(), unit.batch, unit.size));
+    }
+
+    private void abandon(PendingTask task, Throwable cause) {
+        leftQueue(task.size);
+        if (task.batch != null) {
+            task.batch.abort(cause);
+        }
+    }
+
+    /**
+     * Run a batch of tasks and wait until all of them finish.
+     * Only this batch is waited for; batches submitted concurrently by other threads
+     * complete independently.
+     * If tasks throw, the rest of the batch still runs and the first exception is rethrown here.
+     */
     public void submitAll(Iterable<Runnable> tasks)  {
+        submitAll(tasks, Priority.NORMAL, FairTaskQueue.DEFAULT_TENANT);
+    }
+
+    /**
+     * Like submitAll(tasks), for the given priority class and tenant.
+     * If interrupted while waiting, throws IllegalStateException and keeps the interrupt flag;
+     * the batch's queued tasks still run, but nothing waits for them.
+     */
+    public void submitAll(Iterable<Runnable> tasks, Priority priority, String tenant)  {
         // TODO: submit tasks one by one and wait until all finish
+        TaskBatch completion = dispatch(tasks, priority, tenant);
+        try {
+            completion.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the batch", e);
+        }
+    }
+
+    /**
+     * Dispatch a batch of tasks and return a handle that completes when all of them finish,
+     * exceptionally with the first task failure if any task threw.
+     * Returns as soon as the batch is queued; with a bounded queue that includes waiting for room.
+     */
+    public CompletableFuture<Void> submitAllAsync(Iterable<Runnable> tasks) {
+        return submitAllAsync(tasks, Priority.NORMAL, FairTaskQueue.DEFAULT_TENANT);
+    }
+
+    /**
+     * Like submitAllAsync(tasks), for the given priority class and tenant.
+     * In work-stealing mode only the priority is honoured: INTERACTIVE batches jump to the head
+     * of the workers' deques, the others join the tail.
+     */
+    public CompletableFuture<Void> submitAllAsync(Iterable<Runnable> tasks, Priority priority, String tenant) {
+        return dispatch(tasks, priority, tenant).handle();
+    }
+
+    /**
+     * Split the batch into at most one bin per worker in a single pass,
+     * so the scheduler is touched a few times per worker rather than once per task.
+     * Bins are planned for the workers in fatigue order; see TaskPartitioner.
+     */
+    private TaskBatch dispatch(Iterable<Runnable> tasks, Priority priority, String tenant) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks can't be null");
+        }
+        if (priority == null || tenant == null) {
+            throw new IllegalArgumentException("priority and tenant can't be null");
+        }
+        List<Runnable> batch = new ArrayList<>();
         for (Runnable task : tasks) {
-            submit(task);
+            if (task == null) {
+                throw new IllegalArgumentException("Task can't be null");
+            }
+            batch.add(task);
         }
-        synchronized (this) {
-            while (inFlight.get() > 0) {
-                try {
-                    this.wait();
-                } catch (InterruptedException e) {
-                    System.err.println("[TiredExecutor] SubmitAll interrupted: " + e.getMessage());
-                    return;
+        if (batch.isEmpty()) {
+            return new TaskBatch(0);
+        }
+        ensureStarted();
+        checkRunning();
+        long id = batchIds.incrementAndGet();
+        BatchEvent event = new BatchEvent();
+        event.begin();
+        Consumer<TaskBatch> onFinish = finished -> {
+            recordBatch(new BatchLatency(id, priority, tenant, batch.size(), finished));
+            event.end();
+            if (event.shouldCommit()) {
+                event.batchId = id;
+                event.executor = mode.toString();
+                event.tasks = batch.size();
+                event.priority = priority.toString();
+                event.tenant = tenant;
+                event.failed = finished.isFailed();
+                event.commit();
+            }
+        };
+        if (mode == SchedulingMode.WORK_STEALING) {
+            return distribute(batch, priority, onFinish);
+        }
+        growFor(batch.size());
+        TiredThread[] order = workersByFatigue();
+        return enqueueSlices(TaskPartitioner.partition(batch, order), order, priority, tenant, onFinish);
+    }
+
+    /**
+     * Latency summary of a finished batch, kept for the report.
+     */
+    private static final class BatchLatency {
+        final long id;
+        final Priority priority;
+        final String tenant;
+        final int tasks;
+        final boolean failed;
+        final LatencyHistogram queueWait;
+        final LatencyHistogram runTime;
+
+        BatchLatency(long id, Priority priority, String tenant, int tasks, TaskBatch batch) {
+            this.id = id;
+            this.priority = priority;
+            this.tenant = tenant;
+            this.tasks = tasks;
+            this.failed = batch.isFailed();
+            this.queueWait = batch.getQueueWait();
+            this.runTime = batch.getRunTime();
+        }
+    }
+
+    private void recordBatch(BatchLatency latency) {
+        synchronized (recentBatches) {
+            if (recentBatches.size() == RECENT_BATCHES) {
+                recentBatches.removeFirst();
+            }
+            recentBatches.addLast(latency);
+        }
+    }
+
+    /**
+     * Handoff mode: cut each bin into a few slices and queue them, interleaved across bins
+     * so the batch spreads over the workers straight away. Each slice runs start to end on one worker.
+     * Slices rather than whole bins let higher-priority work and other tenants in between,
+     * at the price of a few heap operations per worker.
+     * With a bounded queue the slices go in as room frees up, so a big batch waits like any other submitter.
+     */
+    private TaskBatch enqueueSlices(List<List<Runnable>> bins, TiredThread[] order, Priority priority, String tenant,
+                                    Consumer<TaskBatch> onFinish) {
+        List<List<List<Runnable>>> slicedBins = new ArrayList<>();
+        int maxSlices = 0;
+        for (List<Runnable> bin : bins) {
+            List<List<Runnable>> slices = new ArrayList<>();
+            for (List<Runnable> slice : TaskPartitioner.contiguous(bin, SLICES_PER_WORKER)) {
+                if (!slice.isEmpty()) {
+                    slices.add(slice);
+                }
+            }
+            slicedBins.add(slices);
+            maxSlices = Math.max(maxSlices, slices.size());
+        }
+        // Interleaved: the first slice of every bin, then the second, and so on
+        List<List<Runnable>> units = new ArrayList<>();
+        List<TiredThread> planned = new ArrayList<>();
+        for (int s = 0; s < maxSlices; s++) {
+            for (int b = 0; b < slicedBins.size(); b++) {
+                if (s < slicedBins.get(b).size()) {
+                    units.add(slicedBins.get(b).get(s));
+                    planned.add(order[b]);
+                }
+            }
+        }
+        int left = 0;
+        for (List<Runnable> unit : units) {
+            left += unit.size();
+        }
+        TaskBatch completion = new TaskBatch(left, onFinish);
+        int next = 0;
+        int offset = 0; // Tasks of units.get(next) already queued
+        while (left > 0) {
+            int room = reserveFor(left, completion);
+            if (room == 0) {
+                break;
+            }
+            left -= room;
+            synchronized (dispatchLock) {
+                while (room > 0) {
+                    List<Runnable> unit = units.get(next);
+                    // A slice bigger than the room goes in as two, so the queue is bounded in tasks
+                    List<Runnable> slice = unit.subList(offset, offset + Math.min(room, unit.size() - offset));
+                    long cost = 0;
+                    for (Runnable task : slice) {
+                        cost += CostedTask.costOf(task);
+                    }
+                    pending.add(priority, tenant, new PendingTask(completion.trackAll(slice), slice.size(), cost,
+                            planned.get(next), completion));
+                    room -= slice.size();
+                    offset += slice.size();
+                    if (offset == unit.size()) {
+                        next++;
+                        offset = 0;
+                    }
+                }
+            }
+            pump();
+        }
+        return completion;
+    }
+
+    /**
+     * Work-stealing mode: deal the batch into the workers' deques, one bin per worker, then wake everybody up.
+     * Workers that run out of work steal the rest. With a bounded queue the batch goes in
+     * piece by piece as room frees up, each piece planned for the workers as they are then.
+     */
+    private TaskBatch distribute(List<Runnable> batch, Priority priority, Consumer<TaskBatch> onFinish) {
+        TaskBatch completion = new TaskBatch(batch.size(), onFinish);
+        int next = 0;
+        while (next < batch.size()) {
+            int room = reserveFor(batch.size() - next, completion);
+            if (room == 0) {
+                break;
+            }
+            List<Runnable> piece = batch.subList(next, next + room);
+            next += room;
+            TiredThread[] order;
+            // Planning and queueing happen under the pool lock so no planned worker retires in between
+            synchronized (poolLock) {
+                growFor(piece.size());
+                order = workersByFatigue();
+                List<List<Runnable>> bins = TaskPartitioner.partition(piece, order);
+                long now = System.nanoTime();
+                for (int b = 0; b < bins.size(); b++) {
+                    List<Runnable> bin = bins.get(b);
+                    if (priority == Priority.INTERACTIVE) {
+                        // Pushed to the head in reverse, so the bin keeps its order and runs before queued work
+                        for (int i = bin.size() - 1; i >= 0; i--) {
+                            order[b].enqueueLocalFirst(stamped(completion.track(bin.get(i)), now, completion));
+                        }
+                    } else {
+                        for (Runnable task : bin) {
+                            order[b].enqueueLocal(stamped(completion.track(task), now, completion));
+                        }
+                    }
                 }
             }
+            for (TiredThread worker : order) {
+                worker.wakeUp();
+            }
+        }
+        return completion;
+    }
+
+    private TiredThread[] workersByFatigue() {
+        TiredThread[] order = workers.clone();
+        // Snapshot first: busy workers' fatigue keeps changing, which would break the sort's contract
+        Map<TiredThread, Double> fatigue = new IdentityHashMap<>();
+        for (TiredThread worker : order) {
+            fatigue.put(worker, worker.getFatigue());
+        }
+        Arrays.sort(order, Comparator.comparingDouble(fatigue::get));
+        return order;
+    }
+
+    /**
+     * Called by an idle worker whose own deque is empty.
+     * The victim is the most fatigued worker that still has queued tasks,
+     * so the tiredest worker gets relieved first.
+     * Returns null if there is nothing left to steal.
+     */
+    Runnable steal(TiredThread thief) {
+        while (true) {
+            TiredThread victim = null;
+            for (TiredThread worker : workers) {
+                if (worker != thief && worker.hasLocalTasks()
+                        && (victim == null || worker.getFatigue() > victim.getFatigue())) {
+                    victim = worker;
+                }
+            }
+            if (victim == null) {
+                return null;
+            }
+            Runnable task = victim.stealLocal();
+            if (task != null) {
+                return task;
+            }
+            // Lost the race for the victim's last task, rescan
+        }
+    }
+
+    /**
+     * Supervision: called by a worker whose loop died because a task threw.
+     * Swaps in a fresh worker that inherits its fatigue and takes over its queued tasks,
+     * so the pool keeps its capacity. Does nothing once the executor is shutting down.
+     */
+    void replaceFailed(TiredThread dead) {
+        TiredThread replacement;
+        synchronized (poolLock) {
+            TiredThread[] current = workers;
+            int index = Arrays.asList(current).indexOf(dead);
+            if (shuttingDown || index < 0) {
+                return;
+            }
+            replacement = newWorker(dead.getFatigue());
+            TiredThread[] replaced = current.clone();
+            replaced[index] = replacement;
+            workers = replaced;
+            replacedCount++;
+            Runnable task;
+            while ((task = dead.stealLocal()) != null) {
+                replacement.enqueueLocal(task);
+            }
+            startWorker(replacement);
+        }
+        if (mode == SchedulingMode.HANDOFF) {
+            idleMinHeap.remove(dead);
+            idleMinHeap.add(replacement);
+            pump();
+        } else {
+            replacement.wakeUp();
+        }
+    }
+
+    /**
+     * Called by a worker that is exiting with tasks still in its deque.
+     * Moves them to the live workers so the batch can still complete.
+     */
+    void requeue(TiredThread dying) {
+        List<TiredThread> live = new ArrayList<>();
+        // Under the pool lock so we never refill a worker that is being retired
+        synchronized (poolLock) {
+            for (TiredThread worker : workers) {
+                if (worker != dying && worker.isRunning()) {
+                    live.add(worker);
+                }
+            }
+            if (live.isEmpty()) {
+                return;
+            }
+            int next = 0;
+            Runnable task;
+            while ((task = dying.stealLocal()) != null) {
+                live.get(next++ % live.size()).enqueueLocal(task);
+            }
+        }
+        for (TiredThread worker : live) {
+            worker.wakeUp();
         }
     }
 
     public void shutdown() throws InterruptedException {
         // TODO
-        for (TiredThread worker : workers) {
+        TiredThread[] current;
+        synchronized (poolLock) {
+            shuttingDown = true;
+            current = workers;
+        }
+        synchronized (roomLock) {
+            // Submitters still waiting for room give up with IllegalStateException
+            roomLock.notifyAll();
+        }
+        for (TiredThread worker : current) {
             worker.shutdown();
         }
-        for (TiredThread worker : workers) {
-            worker.join();
+        for (TiredThread worker : current) {
+            worker.awaitExit();
         }
         idleMinHeap.clear();
+        List<PendingTask> dropped;
+        List<Runnable> held = new ArrayList<>();
+        synchronized (dispatchLock) {
+            dropped = pending.drain();
+            // A slice handed over just before shutdown stays in its slot if the poison pill found it taken;
+            // under the dispatch lock no pump can hand over another one after this
+            for (TiredThread worker : current) {
+                Runnable handedOff = worker.drainHandoff();
+                if (handedOff != null) {
+                    held.add(handedOff);
+                }
+            }
+        }
+        for (PendingTask task : dropped) {
+            abandon(task, new IllegalStateException("Executor was shut down"));
+        }
+        // Work-stealing mode: whatever the exited workers still held will never run either
+        for (TiredThread worker : current) {
+            held.addAll(worker.drainLocal());
+        }
+        for (Runnable task : held) {
+            TimedTask timed = (TimedTask) task; // Everything queued by the executor is stamped
+            leftQueue(timed.size);
+            if (timed.batch != null) {
+                timed.batch.abort(new IllegalStateException("Executor was shut down"));
+            }
+        }
 
     }
 
 
 
     public synchronized String getWorkerReport() {
+        TiredThread[] current = workers;
         StringBuilder sb = new StringBuilder();
         sb.append("============== WORKER REPORT ==============\n");
-        for (TiredThread worker : workers) {
+        sb.append("Mode: ").append(mode)
+                .append(" | Threads: ").append(virtualThreads ? "virtual" : "platform")
+                .append(" | Handoff: ").append(spinHandoff ? "spin-park" : "queue")
+                .append(" | Pool: ").append(getPoolSize()).append(started ? "" : " not started")
+                .append(" (").append(minThreads).append("-").append(maxThreads).append(")")
+                .append(" | Fatigue Policy: ").append(options.getFatiguePolicy())
+                .append("\n");
+        sb.append("Queue Depth: ").append(queued.get())
+                .append(" | Capacity: ").append(queueCapacity == Integer.MAX_VALUE ? "unbounded" : queueCapacity)
+                .append(" | Peak: ").append(peakQueued.get())
+                .append(" | Rejected: ").append(rejected.get())
+                .append("\n");
+        for (TiredThread worker : current) {
             sb.append("Worker #").append(worker.getWorkerId())
                     .append(" | Fatigue: ").append(worker.getFatigue())
                     .append(" | Work Time: ")
@@ -104,23 +890,154 @@ public class TiredExecutor {
                     .append(" | Idle Time: ")
                     .append(worker.getTimeIdle() / 1_000_000.0).append(" ms")
                     .append("\n");
+            appendLatencies(sb, "    ", worker.getQueueWaitHistogram(), worker.getRunTimeHistogram(),
+                    worker.getHandoffHistogram());
+        }
+        LatencyHistogram[] pooled = pooledLatencies(current);
+        appendLatencies(sb, "All Workers: ", pooled[0], pooled[1], pooled[2]);
+        List<BatchLatency> batches = recentBatches();
+        if (!batches.isEmpty()) {
+            sb.append("Recent Batches:\n");
+            for (BatchLatency batch : batches) {
+                sb.append("  Batch #").append(batch.id)
+                        .append(" | ").append(batch.priority).append(" / ").append(batch.tenant)
+                        .append(" | Tasks: ").append(batch.tasks)
+                        .append(batch.failed ? " | FAILED" : "")
+                        .append("\n");
+                appendLatencies(sb, "    ", batch.queueWait, batch.runTime, null);
+            }
+        }
+        synchronized (poolLock) {
+            if (replacedCount > 0) {
+                sb.append("Replaced Workers: ").append(replacedCount).append("\n");
+            }
+            if (retiredCount > 0) {
+                sb.append("Retired Workers: ").append(retiredCount)
+                        .append(" | Fatigue: ").append(retiredFatigue)
+                        .append(" | Work Time: ")
+                        .append(retiredTimeUsed / 1_000_000.0).append(" ms")
+                        .append(" | Idle Time: ")
+                        .append(retiredTimeIdle / 1_000_000.0).append(" ms")
+                        .append("\n");
+            }
         }
         sb.append("------------------------------------------\n");
         sb.append("Fairness Score (Sum Of Squared Deviations): ")
-                .append(calculateFairness()).append("\n");
+                .append(calculateFairness(current)).append("\n");
         sb.append("==========================================\n");
         return sb.toString();
     }
 
-    private double calculateFairness(){
+    private static void appendLatencies(StringBuilder sb, String prefix, LatencyHistogram queueWait,
+                                        LatencyHistogram runTime, LatencyHistogram handoff) {
+        sb.append(prefix).append("Queue Wait: ").append(queueWait)
+                .append(" | Run: ").append(runTime);
+        if (handoff != null) {
+            sb.append(" | Handoff: ").append(handoff);
+        }
+        sb.append("\n");
+    }
+
+    /**
+     * Queue wait, run time and handoff latency of all current workers merged.
+     */
+    private static LatencyHistogram[] pooledLatencies(TiredThread[] current) {
+        LatencyHistogram[] pooled = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+        for (TiredThread worker : current) {
+            pooled[0].add(worker.getQueueWaitHistogram());
+            pooled[1].add(worker.getRunTimeHistogram());
+            pooled[2].add(worker.getHandoffHistogram());
+        }
+        return pooled;
+    }
+
+    private List<BatchLatency> recentBatches() {
+        synchronized (recentBatches) {
+            return new ArrayList<>(recentBatches);
+        }
+    }
+
+    /**
+     * The worker report as JSON, for tools: the same pool, queue, worker and batch figures
+     * as getWorkerReport(), with latencies in microseconds.
+     */
+    public synchronized String getWorkerReportJson() {
+        TiredThread[] current = workers;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mode", mode.toString());
+        report.put("threads", virtualThreads ? "virtual" : "platform");
+        report.put("handoff", spinHandoff ? "spin-park" : "queue");
+        report.put("poolSize", getPoolSize());
+        report.put("started", started);
+        report.put("minThreads", minThreads);
+        report.put("maxThreads", maxThreads);
+        report.put("fatiguePolicy", options.getFatiguePolicy().toString());
+
+        Map<String, Object> queue = new LinkedHashMap<>();
+        queue.put("depth", queued.get());
+        queue.put("capacity", queueCapacity == Integer.MAX_VALUE ? null : queueCapacity);
+        queue.put("peak", peakQueued.get());
+        queue.put("rejected", rejected.get());
+        report.put("queue", queue);
+
+        List<Map<String, Object>> workerList = new ArrayList<>();
+        for (TiredThread worker : current) {
+            Map<String, Object> w = new LinkedHashMap<>();
+            w.put("id", worker.getWorkerId());
+            w.put("fatigue", worker.getFatigue());
+            w.put("workTimeMs", worker.getTimeUsed() / 1_000_000.0);
+            w.put("idleTimeMs", worker.getTimeIdle() / 1_000_000.0);
+            w.put("queueWait", worker.getQueueWaitHistogram().toMap());
+            w.put("run", worker.getRunTimeHistogram().toMap());
+            w.put("handoff", worker.getHandoffHistogram().toMap());
+            workerList.add(w);
+        }
+        report.put("workers", workerList);
+
+        LatencyHistogram[] pooled = pooledLatencies(current);
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("queueWait", pooled[0].toMap());
+        all.put("run", pooled[1].toMap());
+        all.put("handoff", pooled[2].toMap());
+        report.put("allWorkers", all);
+
+        List<Map<String, Object>> batchList = new ArrayList<>();
+        for (BatchLatency batch : recentBatches()) {
+            Map<String, Object> b = new LinkedHashMap<>();
+            b.put("id", batch.id);
+            b.put("priority", batch.priority.toString());
+            b.put("tenant", batch.tenant);
+            b.put("tasks", batch.tasks);
+            b.put("failed", batch.failed);
+            b.put("queueWait", batch.queueWait.toMap());
+            b.put("run", batch.runTime.toMap());
+            batchList.add(b);
+        }
+        report.put("recentBatches", batchList);
+        synchronized (poolLock) {
+            report.put("replacedWorkers", replacedCount);
+            report.put("retiredWorkers", retiredCount);
+        }
+        report.put("fairnessScore", calculateFairness(current));
+        try {
+            return JSON.writeValueAsString(report);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not write the worker report", e);
+        }
+    }
+
+    private double calculateFairness(TiredThread[] current){
+        if (current.length == 0) {
+            return 0; // Workers not started yet
+        }
         double totalFatigue = 0;
-        for (TiredThread worker : workers) {
+        for (TiredThread worker : current) {
             double fatigue = worker.getFatigue();
             totalFatigue += fatigue;
         }
-        double averageFatigue = totalFatigue / workers.length;
+        double averageFatigue = totalFatigue / current.length;
         double sumSquaredDeviations = 0;
-        for (TiredThread worker : workers) {
+        for (TiredThread worker : current) {
             double diff = worker.getFatigue() - averageFatigue;
             sumSquaredDeviations += (diff * diff);
         }
@@ -1,7 +1,9 @@
 package scheduling;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -10,13 +12,34 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     private static final Runnable POISON_PILL = () -> {
     }; // Special task to signal shutdown
 
+    private static final Runnable WAKE_UP = () -> {
+    }; // Special task to wake an idle worker so it rescans its deque and its peers
+
     private final int id; // Worker index assigned by the executor
     private final double fatigueFactor; // Multiplier for fatigue calculation
 
     private final AtomicBoolean alive = new AtomicBoolean(true); // Indicates if the worker should keep running
 
-    // Single-slot handoff queue; executor will put tasks here
-    private final BlockingQueue<Runnable> handoff = new ArrayBlockingQueue<>(1);
+    // Single-slot handoff; executor will put tasks here
+    private final Handoff handoff;
+
+    // Local deque used in work-stealing mode; the owner polls the head, thieves poll the tail
+    private final ConcurrentLinkedDeque<Runnable> localTasks = new ConcurrentLinkedDeque<>();
+
+    private final TiredExecutor executor; // Owning executor, null for a standalone worker
+    private final boolean stealing; // Steal from peers when the local deque runs dry
+    private final long idleTimeoutNanos; // Ask the executor to retire us after this much idle time, 0 = never
+    private final FatiguePolicy fatiguePolicy; // Turns past work into the load behind getFatigue()
+    private final TraceRecorder tracer; // Timeline to record tasks into, null when not tracing
+
+    // Load under the fatigue policy and when it was last updated; changed together, so guarded by loadLock
+    private final Object loadLock = new Object();
+    private double load;
+    private long loadUpdatedAt;
+
+    private volatile Thread carrier = this; // Thread actually running the worker loop; a virtual thread if startVirtual() was used
+
+    private volatile Throwable failure = null; // Set if a task threw and killed this worker
 
     private final AtomicBoolean busy = new AtomicBoolean(false); // Indicates if the worker is currently executing a task
 
@@ -24,9 +47,41 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     private final AtomicLong timeIdle = new AtomicLong(0); // Total time spent idle
     private final AtomicLong idleStartTime = new AtomicLong(0); // Timestamp when the worker became idle
 
+    // Per-task latencies; wait and handoff only for tasks the executor stamped with a TimedTask
+    private final LatencyHistogram queueWait = new LatencyHistogram(); // Queued until started
+    private final LatencyHistogram runTime = new LatencyHistogram(); // Started until finished
+    private final LatencyHistogram handoffLatency = new LatencyHistogram(); // Given to this worker until started
+
+    // The worker whose loop runs on this thread, so a batch can settle the worker's accounting before it completes
+    private static final ThreadLocal<TiredThread> CURRENT = new ThreadLocal<>();
+    // Start of the running task, or -1 once its time is recorded; only touched by the worker's own thread
+    private long taskStart = -1;
+    private long taskEnd;
+
     public TiredThread(int id, double fatigueFactor) {
+        this(id, fatigueFactor, FatiguePolicy.lifetime());
+    }
+
+    public TiredThread(int id, double fatigueFactor, FatiguePolicy fatiguePolicy) {
+        this(id, fatigueFactor, null, new ExecutorOptions().fatiguePolicy(fatiguePolicy), 0);
+    }
+
+    TiredThread(int id, double fatigueFactor, TiredExecutor executor, ExecutorOptions options, double inheritedFatigue) {
         this.id = id;
         this.fatigueFactor = fatigueFactor;
+        this.executor = executor;
+        this.stealing = executor != null && options.getMode() == SchedulingMode.WORK_STEALING;
+        this.idleTimeoutNanos = executor != null && options.isElastic()
+                ? options.getIdleTimeoutMillis() * 1_000_000L : 0;
+        this.fatiguePolicy = options.getFatiguePolicy();
+        this.tracer = options.getTraceRecorder();
+        if (tracer != null) {
+            tracer.nameLane(TraceRecorder.workerLane(id), "Worker #" + id);
+        }
+        // Fatigue carried over from the pool is stored as load, so it fades like any other history
+        this.load = inheritedFatigue / fatigueFactor;
+        this.loadUpdatedAt = System.nanoTime();
+        this.handoff = options.useSpinHandoff() ? new SpinParkHandoff() : new QueueHandoff();
         this.idleStartTime.set(System.nanoTime());
         setName(String.format("FF=%.2f", fatigueFactor));
     }
@@ -35,8 +90,38 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         return id;
     }
 
+    public LatencyHistogram getQueueWaitHistogram() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getRunTimeHistogram() {
+        return runTime;
+    }
+
+    public LatencyHistogram getHandoffHistogram() {
+        return handoffLatency;
+    }
+
+    public double getFatigueFactor() {
+        return fatigueFactor;
+    }
+
     public double getFatigue() {
-        return fatigueFactor * timeUsed.get();
+        return getFatigue(System.nanoTime());
+    }
+
+    double getFatigue(long nowNanos) {
+        synchronized (loadLock) {
+            return fatigueFactor * fatiguePolicy.current(load, loadUpdatedAt, nowNanos);
+        }
+    }
+
+    private void recordWork(long workNanos) {
+        long now = System.nanoTime();
+        synchronized (loadLock) {
+            load = fatiguePolicy.accumulate(load, loadUpdatedAt, now, workNanos);
+            loadUpdatedAt = now;
+        }
     }
 
     public boolean isBusy() {
@@ -66,27 +151,190 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         }
     }
 
+    /**
+     * Start the worker loop on a new virtual thread instead of this platform thread.
+     * This Thread object is then only used as the Runnable and as the accounting record.
+     */
+    void startVirtual() {
+        carrier = Thread.ofVirtual().name(getName()).start(this);
+    }
+
+    /**
+     * Whether the worker loop is still running, on whichever thread carries it.
+     */
+    boolean isRunning() {
+        return carrier.isAlive();
+    }
+
+    /**
+     * Wait for the worker loop to exit, on whichever thread carries it.
+     */
+    void awaitExit() throws InterruptedException {
+        carrier.join();
+    }
+
+    /**
+     * Append a task to this worker's local deque (work-stealing mode).
+     * The worker is not woken up; the executor calls wakeUp() once the whole batch is queued.
+     */
+    void enqueueLocal(Runnable task) {
+        localTasks.addLast(task);
+    }
+
+    /**
+     * Push a task to the head of this worker's local deque, so it runs before anything already queued.
+     */
+    void enqueueLocalFirst(Runnable task) {
+        localTasks.addFirst(task);
+    }
+
+    /**
+     * Take a task from the tail of this worker's deque on behalf of another worker.
+     * Returns null if the deque is empty.
+     */
+    Runnable stealLocal() {
+        return localTasks.pollLast();
+    }
+
+    /**
+     * Empty this worker's deque, e.g. to drop what it still held once it has exited.
+     */
+    List<Runnable> drainLocal() {
+        List<Runnable> drained = new ArrayList<>();
+        Runnable task;
+        while ((task = localTasks.pollFirst()) != null) {
+            drained.add(task);
+        }
+        return drained;
+    }
+
+    /**
+     * Empty this worker's handoff slot once it has exited.
+     * A task handed over just before shutdown can be left there when the poison pill found the slot taken.
+     * Returns null if the slot held nothing but a wake-up or the poison pill.
+     */
+    Runnable drainHandoff() {
+        Runnable task = handoff.clear();
+        return task == POISON_PILL || task == WAKE_UP ? null : task;
+    }
+
+    boolean hasLocalTasks() {
+        return !localTasks.isEmpty();
+    }
+
+    /**
+     * Wake this worker if it is parked on its handoff queue.
+     * If a wake-up (or any other task) is already pending, the worker will rescan anyway.
+     */
+    void wakeUp() {
+        handoff.offer(WAKE_UP);
+    }
+
     /**
      * Request this worker to stop after finishing current task.
      * Inserts a poison pill so the worker wakes up and exits.
+     * If the handoff slot is already taken, the worker still sees alive == false after its next task.
      */
     public void shutdown() {
         // TODO
         if (alive.compareAndSet(true, false)) {
-            try{
-                handoff.put(POISON_PILL);
-            } catch (InterruptedException e) {
-                System.out.println("InterruptedException caught " + e.getMessage());;
-            }
+            handoff.offer(POISON_PILL);
+        }
+    }
+
+    /**
+     * Called by the executor, under its pool lock, once it has decided to retire this idle worker.
+     * Closes the current idle period so the retired totals are complete.
+     */
+    void retire() {
+        alive.set(false);
+        timeIdle.addAndGet(System.nanoTime() - idleStartTime.get());
+        idleStartTime.set(System.nanoTime());
+    }
 
+    /**
+     * Next task from the local deque, or one stolen from a peer.
+     * Always null in handoff mode, where the deque is never used.
+     */
+    private Runnable nextQueuedTask() {
+        Runnable task = localTasks.pollFirst();
+        if (task == null && stealing) {
+            task = executor.steal(this);
+        }
+        return task;
+    }
+
+    /**
+     * The exception that killed this worker, or null if it is alive or stopped normally.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Record the time of the task the current worker is running, if not recorded yet.
+     * A batch calls this just before the task counts down, so a report read as soon as the batch
+     * completes already includes the task; the worker loop calls it for every other task.
+     * Does nothing on a thread that is not running a worker loop.
+     */
+    static void taskDone() {
+        TiredThread worker = CURRENT.get();
+        if (worker != null) {
+            worker.recordTaskTime();
+        }
+    }
+
+    private void recordTaskTime() {
+        if (taskStart < 0) {
+            return;
         }
+        taskEnd = System.nanoTime();
+        long workTime = taskEnd - taskStart;
+        taskStart = -1;
+        runTime.record(workTime);
+        timeUsed.addAndGet(workTime);
+        recordWork(workTime);
     }
 
     @Override
     public void run() {
+        CURRENT.set(this);
+        try {
+            runLoop();
+        } catch (Error e) {
+            failure = e;
+            alive.set(false);
+            throw e;
+        } finally {
+            if (executor != null && failure != null) {
+                // Let the executor swap in a replacement, which also takes over our queued tasks
+                executor.replaceFailed(this);
+            }
+            if (stealing && hasLocalTasks()) {
+                // Do not strand queued tasks if this worker dies
+                executor.requeue(this);
+            }
+            CURRENT.remove();
+        }
+    }
+
+    private void runLoop() {
         while (alive.get()) {
             try {
-                Runnable task = handoff.take();
+                Runnable task = nextQueuedTask();
+                if (task == null) {
+                    task = idleTimeoutNanos > 0 ? handoff.poll(idleTimeoutNanos) : handoff.take();
+                    if (task == null) {
+                        // Idle for a whole timeout; the executor decides whether we are still needed
+                        if (executor.tryRetire(this)) {
+                            break;
+                        }
+                        continue;
+                    }
+                    if (task == WAKE_UP) {
+                        continue;
+                    }
+                }
                 long idleDuration = System.nanoTime() - idleStartTime.get();
                 timeIdle.addAndGet(idleDuration);
                 if (task == POISON_PILL) {
@@ -94,10 +342,36 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
                 }
                 this.busy.set(true);
                 long startWorkTime = System.nanoTime();
-                task.run();
+                TaskExecutionEvent event = new TaskExecutionEvent();
+                if (event.isEnabled()) {
+                    event.fatigue = getFatigue(startWorkTime); // Before this task's own work is recorded
+                }
+                event.begin();
+                if (task instanceof TimedTask timed) {
+                    event.queueWait = startWorkTime - timed.queuedAt;
+                    event.handoffLatency = startWorkTime - timed.assignedAt;
+                    queueWait.record(event.queueWait);
+                    handoffLatency.record(event.handoffLatency);
+                }
+                event.failed = true;
+                taskStart = startWorkTime;
+                try {
+                    task.run();
+                    event.failed = false;
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.workerId = id;
+                        event.fatigueFactor = fatigueFactor;
+                        event.commit();
+                    }
+                }
                 this.busy.set(false);
-                long workTime = System.nanoTime() - startWorkTime;
-                timeUsed.addAndGet(workTime);
+                recordTaskTime();
+                if (tracer != null) {
+                    tracer.record("task", "task", TraceRecorder.workerLane(id), startWorkTime, taskEnd,
+                            event.queueWait >= 0 ? Map.of("queueWaitUs", event.queueWait / 1_000.0) : null);
+                }
                 idleStartTime.set(System.nanoTime());
 
             } catch (InterruptedException e) {
@@ -105,6 +379,7 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
                 break;
             } catch(RuntimeException e){
                 System.out.println("Runtime Exception caught " + e.getMessage());
+                failure = e;
                 alive.set(false);
                 break;
             }
@@ -114,6 +389,8 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     @Override
     public int compareTo(TiredThread o) {
         // TODO
-        return Double.compare(this.getFatigue(), o.getFatigue());
+        // Both sides at the same instant, so a decaying policy compares consistently
+        long now = System.nanoTime();
+        return Double.compare(this.getFatigue(now), o.getFatigue(now));
     }
 }
\ No newline at end of file
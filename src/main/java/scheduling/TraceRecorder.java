@@ -0,0 +1,108 @@
+package scheduling;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects an execution timeline and writes it in Chrome's trace_event format
+ * (open it in chrome://tracing or ui.perfetto.dev).
+ * Each lane shows up as a thread row: lane 0 is the engine, the others are workers.
+ * Recording is a queue append per slice; nothing is written until write() is called.
+ */
+public class TraceRecorder {
+
+    public static final int ENGINE_LANE = 0;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final long origin = System.nanoTime();
+    private final ConcurrentLinkedQueue<Slice> slices = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, String> laneNames = new ConcurrentHashMap<>();
+
+    private static final class Slice {
+        final String name;
+        final String category;
+        final int lane;
+        final long start;
+        final long end;
+        final Map<String, Object> args;
+
+        Slice(String name, String category, int lane, long start, long end, Map<String, Object> args) {
+            this.name = name;
+            this.category = category;
+            this.lane = lane;
+            this.start = start;
+            this.end = end;
+            this.args = args;
+        }
+    }
+
+    public TraceRecorder() {
+        laneNames.put(ENGINE_LANE, "Engine");
+    }
+
+    /**
+     * Lane of a TiredThread worker (or a fork/join pool thread) with the given id.
+     */
+    public static int workerLane(int workerId) {
+        return workerId + 1;
+    }
+
+    public void nameLane(int lane, String name) {
+        laneNames.putIfAbsent(lane, name);
+    }
+
+    /**
+     * Record a slice of work that ran on the lane between two System.nanoTime() readings.
+     * args may be null.
+     */
+    public void record(String name, String category, int lane, long startNanos, long endNanos, Map<String, Object> args) {
+        slices.add(new Slice(name, category, lane, startNanos, endNanos, args));
+    }
+
+    public int size() {
+        return slices.size();
+    }
+
+    /**
+     * Write every slice recorded so far as {"traceEvents": [...]}, with times in microseconds.
+     */
+    public void write(String filePath) throws IOException {
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (Map.Entry<Integer, String> lane : laneNames.entrySet()) {
+            Map<String, Object> meta = new LinkedHashMap<>();
+            meta.put("name", "thread_name");
+            meta.put("ph", "M");
+            meta.put("pid", 1);
+            meta.put("tid", lane.getKey());
+            meta.put("args", Map.of("name", lane.getValue()));
+            events.add(meta);
+        }
+        for (Slice slice : slices) {
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("name", slice.name);
+            event.put("cat", slice.category);
+            event.put("ph", "X");
+            event.put("ts", (slice.start - origin) / 1_000.0);
+            event.put("dur", (slice.end - slice.start) / 1_000.0);
+            event.put("pid", 1);
+            event.put("tid", slice.lane);
+            if (slice.args != null) {
+                event.put("args", slice.args);
+            }
+            events.add(event);
+        }
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        JSON.writeValue(new File(filePath), trace);
+    }
+}
@@ -0,0 +1,331 @@
+package spl.lae;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import parser.*;
+
+/**
+ * Evaluates many jobs on one engine, so thread start-up and JIT warm-up are paid once per batch
+ * rather than once per job.
+ *
+ * The batch input is one of:
+ * <ul>
+ *   <li>a directory: every .json, .jsonl, .npy and .bin file in it, in name order;</li>
+ *   <li>a manifest (.txt or .lst): one input path per line, optionally followed by a tab and its output path,
+ *       relative to the manifest's directory; blank lines and lines starting with # are skipped;</li>
+ *   <li>a .jsonl file: many root expressions, one after another.</li>
+ * </ul>
+ * Unless a manifest names it, a job's output is outputDir/stem.json, and the roots of a .jsonl file
+ * go to outputDir/stem.0.json, stem.1.json and so on. Two jobs with the same output are rejected.
+ * A job that fails gets an error output, like a single run does, and the batch carries on.
+ * Parsing, computing and writing overlap across jobs (see run).
+ */
+public class BatchRunner {
+
+    private static final List<String> INPUT_SUFFIXES = List.of(".json", ".jsonl", ".npy", ".bin");
+
+    /**
+     * One input file and where its result goes.
+     */
+    public static final class Source {
+        final Path input;
+        final Path output;
+
+        public Source(Path input, Path output) {
+            this.input = input;
+            this.output = output;
+        }
+
+        boolean isMultiRoot() {
+            return input.getFileName().toString().endsWith(".jsonl");
+        }
+
+        /**
+         * Output of the index-th root: the output path itself, or stem.index.json for a multi-root file.
+         */
+        Path outputFor(int index) {
+            if (!isMultiRoot()) {
+                return output;
+            }
+            String name = output.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            String suffix = dot > 0 ? name.substring(dot) : ".json";
+            return output.resolveSibling(stem + "." + index + suffix);
+        }
+
+        @Override
+        public String toString() {
+            return input.toString();
+        }
+    }
+
+    /**
+     * One root on its way through the pipeline: parsed, then computed, then written.
+     */
+    private static final class Job {
+        final Path output;
+        ComputationNode root;
+        double[][] result;
+        String error;
+
+        Job(Path output, ComputationNode root, String error) {
+            this.output = output;
+            this.root = root;
+            this.error = error;
+        }
+    }
+
+    private static final Job END = new Job(null, null, null); // Marks the end of a stage's output
+
+    private final LinearAlgebraEngine engine;
+    private final InputParser parser;
+    private final int depth;
+    private final AtomicInteger jobCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private volatile Error readFailure; // An Error that stopped the parse stage, rethrown by run()
+
+    public BatchRunner(LinearAlgebraEngine engine, InputParser parser) {
+        this(engine, parser, 2);
+    }
+
+    /**
+     * @param depth how many jobs may wait between two stages, bounding how far parsing runs ahead
+     */
+    public BatchRunner(LinearAlgebraEngine engine, InputParser parser, int depth) {
+        if (engine == null || parser == null) {
+            throw new IllegalArgumentException("engine and parser should not be null");
+        }
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth should be bigger than 0");
+        }
+        this.engine = engine;
+        this.parser = parser;
+        this.depth = depth;
+    }
+
+    /**
+     * Expand a batch input (directory, manifest or multi-root file) into its sources.
+     */
+    public static List<Source> sources(Path input, Path outputDir) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        if (Files.isDirectory(input)) {
+            File[] files = input.toFile().listFiles(f -> f.isFile() && INPUT_SUFFIXES.stream().anyMatch(f.getName()::endsWith));
+            if (files == null) {
+                throw new IOException("Can't list " + input);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                sources.add(new Source(file.toPath(), defaultOutput(file.toPath(), outputDir)));
+            }
+        } else if (input.getFileName().toString().endsWith(".txt") || input.getFileName().toString().endsWith(".lst")) {
+            Path base = input.toAbsolutePath().getParent();
+            for (String line : Files.readAllLines(input)) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                Path job = base.resolve(fields[0].trim());
+                Path output = fields.length > 1 ? base.resolve(fields[1].trim()) : defaultOutput(job, outputDir);
+                sources.add(new Source(job, output));
+            }
+        } else {
+            sources.add(new Source(input, defaultOutput(input, outputDir)));
+        }
+        // Inputs in the output directory must not be overwritten by another job's result
+        Set<Path> inputs = new HashSet<>();
+        for (Source source : sources) {
+            inputs.add(source.input.toAbsolutePath().normalize());
+        }
+        // Nor may two jobs share an output, e.g. a.json and a.npy both defaulting to a.json
+        Map<Path, Path> outputs = new HashMap<>();
+        for (Source source : sources) {
+            Path output = source.output.toAbsolutePath().normalize();
+            if (inputs.contains(output)) {
+                throw new IllegalArgumentException("Output " + source.output + " would overwrite an input");
+            }
+            Path other = outputs.putIfAbsent(output, source.input);
+            if (other != null) {
+                throw new IllegalArgumentException("Jobs " + other + " and " + source.input
+                        + " would both write " + source.output);
+            }
+        }
+        return sources;
+    }
+
+    private static Path defaultOutput(Path input, Path outputDir) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return outputDir.resolve((dot > 0 ? name.substring(0, dot) : name) + ".json");
+    }
+
+    /**
+     * Evaluate every root of every source in order, as a three-stage pipeline:
+     * a parse thread reads job N+1 while the calling thread computes job N on the engine
+     * and a write thread writes job N-1. Bounded queues between the stages keep parsing
+     * from running more than depth jobs ahead of compute, and compute from outrunning the writes.
+     * An Error while parsing (out of memory, say) ends the batch after the jobs parsed before it
+     * and is rethrown here.
+     */
+    public void run(List<Source> sources) {
+        readFailure = null;
+        BlockingQueue<Job> parsed = new ArrayBlockingQueue<>(depth);
+        BlockingQueue<Job> computed = new ArrayBlockingQueue<>(depth);
+        Thread reader = new Thread(() -> read(sources, parsed), "batch-parse");
+        Thread writer = new Thread(() -> write(computed), "batch-write");
+        reader.start();
+        writer.start();
+        try {
+            for (Job job = parsed.take(); job != END; job = parsed.take()) {
+                compute(job);
+                computed.put(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Stops the reader if compute ended early; the writer always finishes what it was given
+            reader.interrupt();
+            putUninterruptibly(computed, END);
+            joinUninterruptibly(writer);
+            joinUninterruptibly(reader);
+        }
+        if (readFailure != null) {
+            throw readFailure;
+        }
+    }
+
+    private void read(List<Source> sources, BlockingQueue<Job> parsed) {
+        boolean cancelled = false;
+        try {
+            for (Source source : sources) {
+                int[] index = {0};
+                try {
+                    parser.parseEach(source.input.toString(),
+                            root -> put(parsed, new Job(source.outputFor(index[0]++), root, null)));
+                    if (index[0] == 0) {
+                        put(parsed, new Job(source.outputFor(0), null, "Invalid node structure: empty input"));
+                    }
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (ParseException | RuntimeException e) {
+                    // Unknown operators surface from the parser as IllegalArgumentException
+                    put(parsed, new Job(source.outputFor(index[0]), null, e.getMessage()));
+                }
+            }
+        } catch (CancellationException e) {
+            cancelled = true; // The compute stage stopped; nobody is left to take what we parse
+        } catch (Error e) {
+            readFailure = e; // Rethrown by run() once the jobs parsed so far are done
+        } finally {
+            // However parsing ended, so the compute stage never waits for jobs that won't come
+            if (!cancelled) {
+                try {
+                    put(parsed, END);
+                } catch (CancellationException e) {
+                    // The compute stage stopped meanwhile
+                }
+            }
+        }
+    }
+
+    private void compute(Job job) {
+        jobCount.incrementAndGet();
+        if (job.root != null) {
+            try {
+                job.result = engine.run(job.root).getMatrix();
+            } catch (RuntimeException e) {
+                job.error = e.getMessage();
+            }
+            job.root = null; // The input isn't needed while the result waits to be written
+        }
+        if (job.error != null) {
+            failedCount.incrementAndGet();
+        }
+    }
+
+    private void write(BlockingQueue<Job> computed) {
+        try {
+            for (Job job = computed.take(); job != END; job = computed.take()) {
+                try {
+                    if (job.error != null) {
+                        OutputWriter.write("Error: " + job.error, job.output.toString());
+                    } else {
+                        OutputWriter.write(job.result, job.output.toString());
+                    }
+                } catch (IOException e) {
+                    if (job.error == null) {
+                        failedCount.incrementAndGet();
+                    }
+                    System.err.println("Failed to write " + job.output + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * put() for the parse stage, whose parser callback cannot throw InterruptedException.
+     */
+    private static void put(BlockingQueue<Job> queue, Job job) {
+        try {
+            queue.put(job);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Batch was interrupted");
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Job> queue, Job job) {
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                queue.put(job);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getJobCount() {
+        return jobCount.get();
+    }
+
+    public int getFailedCount() {
+        return failedCount.get();
+    }
+}
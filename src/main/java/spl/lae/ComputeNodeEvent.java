@@ -0,0 +1,38 @@
+package spl.lae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one loadAndCompute call: loading the operands, running the row tasks and resolving the node.
+ */
+@Name("spl.lae.ComputeNode")
+@Label("Compute Node")
+@Category({"Linear Algebra Engine", "Engine"})
+@Description("One computation node resolved by the engine")
+class ComputeNodeEvent extends Event {
+
+    @Label("Node Type")
+    String nodeType;
+
+    @Label("Left Rows")
+    int leftRows;
+
+    @Label("Left Columns")
+    int leftCols;
+
+    @Label("Right Rows")
+    int rightRows = -1; // -1 for unary operators
+
+    @Label("Right Columns")
+    int rightCols = -1;
+
+    @Label("Row Tasks")
+    int tasks;
+
+    @Label("Failed")
+    boolean failed;
+}
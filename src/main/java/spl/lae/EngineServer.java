@@ -0,0 +1,372 @@
+package spl.lae;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import parser.*;
+
+/**
+ * Serves expressions from one long-lived engine over a local socket: loopback TCP or a Unix-domain socket.
+ *
+ * The protocol is line-delimited JSON. Each request is one expression document on a single line,
+ * and each gets one response line, in order, on the same connection:
+ * {"result": [[...]], "timing": {...}} or {"error": "...", "timing": {...}}.
+ * Timing has queue_ms (waiting for the engine), parse_ms, compute_ms and total_ms.
+ * A connection may send any number of requests; refs in them resolve against the server's base directory
+ * and may not lead outside it. A request line longer than maxRequestBytes is skipped and answered
+ * with an error (without timing), so one client can't make the server buffer without limit.
+ *
+ * At most maxConnections clients are served at once; a client beyond that gets a single
+ * "Server busy" error line and is disconnected. Up to maxEvaluations requests are evaluated on the engine
+ * at once, each in its own EvaluationContext; the rest wait their turn, which is what queue_ms measures.
+ */
+public class EngineServer implements AutoCloseable {
+
+    private final LinearAlgebraEngine engine;
+    private final InputParser parser = new InputParser();
+    private final Path baseDir;
+    private final Semaphore connections;
+    private final Semaphore evaluations; // Fair, so waiting requests get the engine in arrival order
+    private final ExecutorService handlers;
+    private final Set<SocketChannel> open = ConcurrentHashMap.newKeySet();
+    private volatile int maxRequestBytes = 64 << 20;
+    private ServerSocketChannel server;
+    private Thread acceptor;
+    private Path socketFile; // Removed on close, for Unix-domain sockets
+
+    public EngineServer(LinearAlgebraEngine engine, int maxConnections, Path baseDir) {
+        this(engine, maxConnections, maxConnections, baseDir);
+    }
+
+    public EngineServer(LinearAlgebraEngine engine, int maxConnections, int maxEvaluations, Path baseDir) {
+        if (engine == null) {
+            throw new IllegalArgumentException("engine should not be null");
+        }
+        if (maxConnections <= 0 || maxEvaluations <= 0) {
+            throw new IllegalArgumentException("maxConnections and maxEvaluations should be bigger than 0");
+        }
+        this.engine = engine;
+        this.baseDir = baseDir;
+        this.connections = new Semaphore(maxConnections);
+        this.evaluations = new Semaphore(maxEvaluations, true);
+        this.handlers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "lae-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Longest request line accepted, in bytes; 64 MiB unless set.
+     */
+    public void setMaxRequestBytes(int maxRequestBytes) {
+        if (maxRequestBytes <= 0) {
+            throw new IllegalArgumentException("maxRequestBytes should be bigger than 0");
+        }
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    public int getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    /**
+     * A TCP port on the loopback interface (0 picks a free one), or a Unix-domain socket path.
+     */
+    public static SocketAddress address(String spec) {
+        if (spec.chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /**
+     * Start accepting connections; returns the address actually bound.
+     */
+    public synchronized SocketAddress start(SocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        if (address instanceof UnixDomainSocketAddress unix) {
+            socketFile = unix.getPath();
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address);
+        acceptor = new Thread(this::acceptLoop, "lae-accept");
+        acceptor.start();
+        return server.getLocalAddress();
+    }
+
+    private void acceptLoop() {
+        int failures = 0; // Accept failures in a row
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return; // close() was called
+            } catch (IOException e) {
+                // A lasting failure (out of file descriptors, say) would spin; back off, up to a second
+                failures++;
+                System.err.println("Accept failed: " + e.getMessage());
+                try {
+                    Thread.sleep(Math.min(1000L, 10L << Math.min(failures, 7)));
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+            failures = 0;
+            if (!connections.tryAcquire()) {
+                rejectBusy(client);
+                continue;
+            }
+            open.add(client);
+            // close() closes the server before the open clients, so a client it missed is dropped here
+            if (!server.isOpen()) {
+                drop(client);
+                return;
+            }
+            try {
+                handlers.execute(() -> {
+                    try {
+                        serve(client);
+                    } finally {
+                        drop(client);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Handlers already shut down by close()
+                drop(client);
+                return;
+            }
+        }
+    }
+
+    private void drop(SocketChannel client) {
+        open.remove(client);
+        connections.release();
+        closeQuietly(client);
+    }
+
+    private void rejectBusy(SocketChannel client) {
+        try (OutputStream out = Channels.newOutputStream(client)) {
+            writeError(out, "Error: Server busy");
+        } catch (IOException e) {
+            // The client is dropped either way
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    private static void writeError(OutputStream out, String error) throws IOException {
+        try (JsonGenerator generator = OutputWriter.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("error", error);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (InputStream in = Channels.newInputStream(client);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(client))) {
+            RequestReader requests = new RequestReader(in, maxRequestBytes);
+            for (String line = requests.next(); line != null; line = requests.next()) {
+                if (requests.tooLong()) {
+                    writeError(out, "Error: Request is longer than " + requests.maxBytes + " bytes");
+                    out.flush();
+                } else if (!line.isBlank()) {
+                    respond(line, out);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away, or close() shut the connection
+        }
+    }
+
+    /**
+     * Splits a connection's input into lines, holding at most maxBytes of any one line.
+     */
+    private static final class RequestReader {
+        private final InputStream in;
+        private final int maxBytes;
+        private final byte[] buffer = new byte[8192];
+        private ByteArrayOutputStream line;
+        private int pos = 0;
+        private int limit = 0;
+        private boolean tooLong;
+
+        RequestReader(InputStream in, int maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * The next line without its terminator, or null at the end of the stream.
+         * A line over maxBytes is read through to its newline but not kept: it comes back empty, with tooLong() set.
+         */
+        String next() throws IOException {
+            line = new ByteArrayOutputStream(); // Not reset, so one big request doesn't pin its buffer
+            tooLong = false;
+            boolean started = false;
+            while (true) {
+                if (pos == limit) {
+                    int read = in.read(buffer);
+                    if (read < 0) {
+                        // A last line without a newline still counts
+                        return started ? finish() : null;
+                    }
+                    pos = 0;
+                    limit = read;
+                }
+                started = true;
+                int start = pos;
+                while (pos < limit && buffer[pos] != '\n') {
+                    pos++;
+                }
+                if (!tooLong) {
+                    if (line.size() + (pos - start) > maxBytes) {
+                        tooLong = true;
+                        line.reset();
+                    } else {
+                        line.write(buffer, start, pos - start);
+                    }
+                }
+                if (pos < limit) {
+                    pos++; // The newline
+                    return finish();
+                }
+            }
+        }
+
+        private String finish() {
+            if (tooLong) {
+                return "";
+            }
+            String text = line.toString(StandardCharsets.UTF_8);
+            return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+        }
+
+        boolean tooLong() {
+            return tooLong;
+        }
+    }
+
+    private void respond(String request, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        long parseNanos = -1; // Set as each phase completes
+        long queueNanos = 0;
+        long computeNanos = 0;
+        double[][] result = null;
+        String error = null;
+        try {
+            ComputationNode root = parser.parseDocument(request, baseDir);
+            parseNanos = System.nanoTime() - start;
+            long queued = System.nanoTime();
+            evaluations.acquire();
+            long acquired = System.nanoTime();
+            queueNanos = acquired - queued;
+            try {
+                result = engine.run(root, new EvaluationContext()).getMatrix();
+            } finally {
+                evaluations.release();
+                computeNanos = System.nanoTime() - acquired;
+            }
+        } catch (ParseException | RuntimeException e) {
+            error = "Error: " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Error: Server is shutting down";
+        }
+        if (parseNanos < 0) {
+            parseNanos = System.nanoTime() - start; // Failed while parsing
+        }
+        try (JsonGenerator generator = OutputWriter.createGenerator(out)) {
+            generator.writeStartObject();
+            if (error != null) {
+                generator.writeStringField("error", error);
+            } else {
+                generator.writeFieldName("result");
+                OutputWriter.writeRows(generator, result);
+            }
+            generator.writeObjectFieldStart("timing");
+            generator.writeNumberField("queue_ms", millis(queueNanos));
+            generator.writeNumberField("parse_ms", millis(parseNanos));
+            generator.writeNumberField("compute_ms", millis(computeNanos));
+            generator.writeNumberField("total_ms", millis(System.nanoTime() - start));
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Stop accepting, disconnect every client and wait for their handlers.
+     * If interrupted, stops waiting and keeps the interrupt flag; the handlers are already disconnected.
+     * The engine is left running; it belongs to the caller.
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        closeQuietly(server);
+        for (SocketChannel client : open) {
+            closeQuietly(client);
+        }
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(10, TimeUnit.SECONDS);
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (socketFile != null) {
+            try {
+                Files.deleteIfExists(socketFile);
+            } catch (IOException e) {
+                // Nothing else to clean up
+            }
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package spl.lae;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import memory.SharedMatrix;
+import parser.ComputationNode;
+
+/**
+ * The state of one evaluation on a LinearAlgebraEngine: the operands of the node being computed,
+ * how many parents still need each node, and the result.
+ * The engine itself holds only the executor, so any number of threads can evaluate at once,
+ * each with its own context. A context is used by one evaluation at a time, and the expressions
+ * evaluated concurrently must not share nodes.
+ */
+public final class EvaluationContext {
+
+    final SharedMatrix leftMatrix = new SharedMatrix();
+    final SharedMatrix rightMatrix = new SharedMatrix();
+    final Map<ComputationNode, Integer> uses = new IdentityHashMap<>(); // Parents still to use each node
+    private ComputationNode result;
+    private int nodesComputed;
+
+    /**
+     * Drop the operands, so a loaded leaf can be collected instead of staying reachable
+     * until the next node replaces it.
+     */
+    void release() {
+        leftMatrix.loadRowMajor(new double[0][]);
+        rightMatrix.loadRowMajor(new double[0][]);
+    }
+
+    void nodeComputed() {
+        nodesComputed++;
+    }
+
+    void setResult(ComputationNode result) {
+        this.result = result;
+    }
+
+    /**
+     * The root of the last completed evaluation, resolved to a matrix; null before one completes.
+     */
+    public ComputationNode getResult() {
+        return result;
+    }
+
+    /**
+     * Operator nodes computed with this context so far.
+     */
+    public int getNodesComputed() {
+        return nodesComputed;
+    }
+}
@@ -3,45 +3,190 @@ package spl.lae;
 import parser.*;
 import memory.*;
 import scheduling.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class LinearAlgebraEngine {
 
-    private SharedMatrix leftMatrix = new SharedMatrix();
-    private SharedMatrix rightMatrix = new SharedMatrix();
-    private TiredExecutor executor;
+    // Everything else an evaluation needs lives in its EvaluationContext, so one engine serves concurrent callers
+    private BatchExecutor executor;
+    private TraceRecorder tracer; // null unless the options asked for a timeline
+    private boolean ownsExecutor = true;
+    // Holds the operands for the context-free loadAndCompute(node) and createXTasks(); used by one call at a time
+    private final EvaluationContext defaultContext = new EvaluationContext();
 
     public LinearAlgebraEngine(int numThreads) {
         // TODO: create executor with given thread count
         executor = new TiredExecutor(numThreads);
     }
 
+    /**
+     * Options pick the backend (TiredExecutor by default, or fork/join) and tune it.
+     */
+    public LinearAlgebraEngine(int numThreads, ExecutorOptions options) {
+        executor = BatchExecutor.create(numThreads, options);
+        tracer = options.getTraceRecorder();
+    }
+
+    /**
+     * An engine on an executor owned by the caller, e.g. one shared with other engines.
+     * The caller shuts the executor down; shutdown() here leaves it running.
+     */
+    public LinearAlgebraEngine(BatchExecutor executor, TraceRecorder tracer) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor should not be null");
+        }
+        this.executor = executor;
+        this.tracer = tracer;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Evaluate the expression in a fresh context. Safe to call from several threads at once.
+     */
     public ComputationNode run(ComputationNode computationRoot) {
+        return run(computationRoot, new EvaluationContext());
+    }
+
+    public ComputationNode run(ComputationNode computationRoot, EvaluationContext context) {
         // TODO: resolve computation tree step by step until final matrix is produced\
         if (computationRoot == null) {
             throw new IllegalArgumentException("computation root should not be null");
         }
+        if (context == null) {
+            throw new IllegalArgumentException("context should not be null");
+        }
         try {
-            computationRoot.associativeNesting();
+            prepare(computationRoot, context);
             while (computationRoot.getNodeType() != ComputationNodeType.MATRIX) {
                 ComputationNode resolvableNode = computationRoot.findResolvable();
                 if (resolvableNode == null) {
                     throw new IllegalArgumentException("Tree Structure Error: no resolvable node");
                 }
-                loadAndCompute(resolvableNode);
+                loadAndCompute(resolvableNode, context);
             }
+            context.setResult(computationRoot);
             return computationRoot;
-        }finally {
-            try{
-                executor.shutdown();
-            } catch (InterruptedException e) {
+        } finally {
+            // A failed expression must not leave its operands or counts behind for the context's next one
+            context.uses.clear();
+            context.release();
+        }
+    }
+
+    /**
+     * Stops the executor's threads, unless the executor was passed in by the caller.
+     * run() leaves them running, so one engine can evaluate any number of expressions;
+     * call this once the engine is no longer needed.
+     */
+    public void shutdown() {
+        if (!ownsExecutor) {
+            return;
+        }
+        try {
+            executor.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Walk the input once, shared nodes included only once: nest every n-ary node into binary ones,
+     * and count how many parents use each node.
+     * A shared node is then computed once, by whichever parent reaches it first, and the rest see it resolved.
+     */
+    private void prepare(ComputationNode root, EvaluationContext context) {
+        Map<ComputationNode, Integer> uses = context.uses;
+        uses.clear();
+        Set<ComputationNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ComputationNode> pending = new ArrayDeque<>();
+        seen.add(root);
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            ComputationNode node = pending.pop();
+            node.associativeNesting();
+            if (node.getChildren() == null) {
+                continue;
             }
+            for (ComputationNode child : node.getChildren()) {
+                uses.merge(child, 1, Integer::sum);
+                if (seen.add(child)) {
+                    pending.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * The left operand is computed in place, so a node that other parents still need is copied first.
+     * Referenced leaves are loaded fresh for every use and never need the copy.
+     */
+    private double[][] leftOperand(ComputationNode child, EvaluationContext context) {
+        double[][] matrix = child.getMatrix();
+        if (child.getRef() == null && context.uses.getOrDefault(child, 1) > 1) {
+            double[][] copy = new double[matrix.length][];
+            for (int i = 0; i < matrix.length; i++) {
+                copy[i] = Arrays.copyOf(matrix[i], matrix[i].length);
+            }
+            return copy;
         }
+        return matrix;
     }
 
+    /**
+     * Compute one node whose operands are all matrices, in the engine's default context.
+     * Concurrent callers take turns; give each its own context to compute in parallel.
+     */
     public void loadAndCompute(ComputationNode node) {
+        synchronized (defaultContext) {
+            loadAndCompute(node, defaultContext);
+        }
+    }
+
+    public void loadAndCompute(ComputationNode node, EvaluationContext context) {
+        // One JFR event per node; costs nothing unless a recording has it enabled
+        ComputeNodeEvent event = new ComputeNodeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            compute(node, context, event);
+        } catch (RuntimeException e) {
+            event.failed = true;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                if (event.nodeType == null) {
+                    event.nodeType = String.valueOf(node.getNodeType());
+                }
+                event.commit();
+            }
+            if (tracer != null) {
+                Map<String, Object> args = new LinkedHashMap<>();
+                args.put("left", event.leftRows + "x" + event.leftCols);
+                if (event.rightRows >= 0) {
+                    args.put("right", event.rightRows + "x" + event.rightCols);
+                }
+                args.put("tasks", event.tasks);
+                tracer.record(event.nodeType != null ? event.nodeType : "node", "node",
+                        TraceRecorder.ENGINE_LANE, start, System.nanoTime(), args);
+            }
+        }
+    }
+
+    private void compute(ComputationNode node, EvaluationContext context, ComputeNodeEvent event) {
         // TODO: load operand matrices
         // TODO: create compute tasks & submit tasks to executor
+        long loadStart = System.nanoTime();
+        SharedMatrix leftMatrix = context.leftMatrix;
+        SharedMatrix rightMatrix = context.rightMatrix;
 
         //load operand matrix :
         if(node.getNodeType() == ComputationNodeType.MATRIX){
@@ -50,43 +195,84 @@ public class LinearAlgebraEngine {
         if(node.getChildren() == null) {
             throw new IllegalArgumentException("can't compute, node have no children");
         }
-        ComputationNode left;
-        ComputationNode right;
+        // Each operand is fetched once: for a referenced leaf that is the load from its file
+        double[][] left;
+        double[][] right = null;
         ComputationNodeType type = node.getNodeType();
         List<Runnable> tasks;
         if(type == ComputationNodeType.ADD){
             if(node.getChildren().size() < 2){
                 throw new IllegalArgumentException("can't add, node have less than 2 children");
             }
-            left = node.getChildren().get(0);
-            leftMatrix.loadRowMajor(left.getMatrix());
-            right = node.getChildren().get(1);
-            rightMatrix.loadRowMajor(right.getMatrix());
-            tasks = createAddTasks();
+            left = leftOperand(node.getChildren().get(0), context);
+            leftMatrix.loadRowMajor(left);
+            right = node.getChildren().get(1).getMatrix();
+            rightMatrix.loadRowMajor(right);
+            tasks = createAddTasks(context);
         }else if(type == ComputationNodeType.MULTIPLY){
             if(node.getChildren().size() < 2){
                 throw new IllegalArgumentException("can't multiply, node have less than 2 children");
             }
-            left = node.getChildren().get(0);
-            leftMatrix.loadRowMajor(left.getMatrix());
-            right = node.getChildren().get(1);
-            rightMatrix.loadColumnMajor(right.getMatrix());
-            tasks = createMultiplyTasks();
+            left = leftOperand(node.getChildren().get(0), context);
+            leftMatrix.loadRowMajor(left);
+            right = node.getChildren().get(1).getMatrix();
+            rightMatrix.loadColumnMajor(right);
+            tasks = createMultiplyTasks(context);
         }else if(type == ComputationNodeType.NEGATE){
-            left = node.getChildren().get(0);
-            leftMatrix.loadRowMajor(left.getMatrix());
-            tasks = createNegateTasks();
+            left = leftOperand(node.getChildren().get(0), context);
+            leftMatrix.loadRowMajor(left);
+            tasks = createNegateTasks(context);
         }else{
             //type = transpose :
-            left = node.getChildren().get(0);
-            leftMatrix.loadRowMajor(left.getMatrix());
-            tasks = createTransposeTasks();
+            left = leftOperand(node.getChildren().get(0), context);
+            leftMatrix.loadRowMajor(left);
+            tasks = createTransposeTasks(context);
+        }
+        event.nodeType = type.toString(); // before resolve() turns the node into a MATRIX
+        event.leftRows = rows(left);
+        event.leftCols = cols(left);
+        if (right != null) {
+            event.rightRows = rows(right);
+            event.rightCols = cols(right);
+        }
+        event.tasks = tasks.size();
+        for (ComputationNode child : node.getChildren()) {
+            context.uses.computeIfPresent(child, (c, n) -> n > 1 ? n - 1 : null);
         }
+        long submitStart = System.nanoTime();
         executor.submitAll(tasks);
+        long resolveStart = System.nanoTime();
         node.resolve(leftMatrix.readRowMajor());
+        context.release();
+        context.nodeComputed();
+        if (tracer != null) {
+            // The serial phases around the parallel one, nested under the node's slice
+            tracer.record("load", "phase", TraceRecorder.ENGINE_LANE, loadStart, submitStart, null);
+            tracer.record("submitAll", "phase", TraceRecorder.ENGINE_LANE, submitStart, resolveStart, null);
+            tracer.record("readRowMajor", "phase", TraceRecorder.ENGINE_LANE, resolveStart, System.nanoTime(), null);
+        }
+    }
+
+    private static int rows(double[][] matrix) {
+        return matrix == null ? 0 : matrix.length;
+    }
+
+    private static int cols(double[][] matrix) {
+        return matrix == null || matrix.length == 0 ? 0 : matrix[0].length;
     }
 
+    /**
+     * Row tasks for the operands loaded in the engine's default context.
+     */
     public List<Runnable> createAddTasks() {
+        synchronized (defaultContext) {
+            return createAddTasks(defaultContext);
+        }
+    }
+
+    public List<Runnable> createAddTasks(EvaluationContext context) {
+        SharedMatrix leftMatrix = context.leftMatrix;
+        SharedMatrix rightMatrix = context.rightMatrix;
         // TODO: return tasks that perform row-wise addition
         if (leftMatrix == null || rightMatrix == null || leftMatrix.length() == 0 || rightMatrix.length() == 0) {
             throw new IllegalArgumentException("can't add empty Matrix");
@@ -97,16 +283,29 @@ public class LinearAlgebraEngine {
             throw new IllegalArgumentException("can't add, matrix dimensions mismatch");
         }
 
+        // Cost estimate: one addition per element of the row
+        long cost = leftMatrix.get(0).length();
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int row = i;
-            tasks[i] = () -> {
+            tasks[i] = new CostedTask(() -> {
                 leftMatrix.get(row).add(rightMatrix.get(row));
-            };
+            }, cost);
         }
         return List.of(tasks);
     }
 
+    /**
+     * Row tasks for the operands loaded in the engine's default context.
+     */
     public List<Runnable> createMultiplyTasks() {
+        synchronized (defaultContext) {
+            return createMultiplyTasks(defaultContext);
+        }
+    }
+
+    public List<Runnable> createMultiplyTasks(EvaluationContext context) {
+        SharedMatrix leftMatrix = context.leftMatrix;
+        SharedMatrix rightMatrix = context.rightMatrix;
         // TODO: return tasks that perform row × matrix multiplication
         if (leftMatrix == null || rightMatrix == null || leftMatrix.length() == 0 || rightMatrix.length() == 0) {
             throw new IllegalArgumentException("can't multiply empty Matrix");
@@ -114,53 +313,66 @@ public class LinearAlgebraEngine {
         if(leftMatrix.get(0).length() != rightMatrix.get(0).length()){
             throw new IllegalArgumentException("can't multiply, matrices of different dimensions");
         }
-//        if(!canMultiply()){
-//            throw new ArithmeticException("Can't multiply matrix with different dimensions");
-//        }
-//        if (leftMatrix.getOrientation() != VectorOrientation.ROW_MAJOR) {
-//            double[][] temp = leftMatrix.readRowMajor();
-//            leftMatrix.loadRowMajor(temp);
-//        }
-//        if (rightMatrix.getOrientation() != VectorOrientation.COLUMN_MAJOR) {
-//            double[][] temp = rightMatrix.readRowMajor();
-//            rightMatrix.loadColumnMajor(temp);
-//        }
         Runnable[] tasks = new Runnable[leftMatrix.length()];
+        // Cost estimate: one multiply-add per (row element, result column) pair
+        long cost = (long) leftMatrix.get(0).length() * rightMatrix.length();
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int row = i;
-            tasks[i] = () -> {
+            tasks[i] = new CostedTask(() -> {
                 leftMatrix.get(row).vecMatMul(rightMatrix);
-            };
+            }, cost);
         }
         return List.of(tasks);
     }
 
+    /**
+     * Row tasks for the operands loaded in the engine's default context.
+     */
     public List<Runnable> createNegateTasks() {
+        synchronized (defaultContext) {
+            return createNegateTasks(defaultContext);
+        }
+    }
+
+    public List<Runnable> createNegateTasks(EvaluationContext context) {
+        SharedMatrix leftMatrix = context.leftMatrix;
         // TODO: return tasks that negate rows
         Runnable[] tasks = new Runnable[leftMatrix.length()];
         if (leftMatrix == null || leftMatrix.length() == 0) {
             throw new IllegalArgumentException("can't negate empty Matrix");
         }
+        long cost = leftMatrix.get(0).length();
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int row = i;
-            tasks[i] = () -> {
+            tasks[i] = new CostedTask(() -> {
                 leftMatrix.get(row).negate();
-            };
+            }, cost);
         }
         return List.of(tasks);
     }
 
+    /**
+     * Row tasks for the operands loaded in the engine's default context.
+     */
     public List<Runnable> createTransposeTasks() {
+        synchronized (defaultContext) {
+            return createTransposeTasks(defaultContext);
+        }
+    }
+
+    public List<Runnable> createTransposeTasks(EvaluationContext context) {
+        SharedMatrix leftMatrix = context.leftMatrix;
         // TODO: return tasks that transpose rows
         Runnable[] tasks = new Runnable[leftMatrix.length()];
         if (leftMatrix == null || leftMatrix.length() == 0) {
             throw new IllegalArgumentException("can't transpose empty Matrix");
         }
+        // Transposing a vector only flips its orientation, so every row costs the same
         for (int i = 0; i < leftMatrix.length(); i++) {
             final int row = i;
-            tasks[i] = () -> {
+            tasks[i] = new CostedTask(() -> {
                 leftMatrix.get(row).transpose();
-            };
+            }, 1);
         }
         return List.of(tasks);
     }
@@ -170,35 +382,7 @@ public class LinearAlgebraEngine {
         return executor.getWorkerReport();
     }
 
-    private boolean canAdd() {
-        if (leftMatrix.getOrientation() == rightMatrix.getOrientation()) {
-            return leftMatrix.length() == rightMatrix.length()
-                    && leftMatrix.get(0).length() == rightMatrix.get(0).length();
-        } else {
-            return leftMatrix.length() == rightMatrix.get(0).length()
-                    && leftMatrix.get(0).length() == rightMatrix.length();
-        }
+    public String getWorkerReportJson() {
+        return executor.getWorkerReportJson();
     }
-
-    private boolean canMultiply(){
-        VectorOrientation leftOrientation = leftMatrix.getOrientation();
-        VectorOrientation rightOrientation = rightMatrix.getOrientation();
-        if(leftOrientation == rightOrientation){
-            if(leftOrientation == VectorOrientation.ROW_MAJOR){
-                return leftMatrix.get(0).length() == rightMatrix.length();
-            } else {
-                return leftMatrix.length() == rightMatrix.get(0).length();
-            }
-        } else {
-            if(leftOrientation == VectorOrientation.ROW_MAJOR){
-                return leftMatrix.get(0).length() == rightMatrix.get(0).length();
-            } else {
-                return leftMatrix.length() == rightMatrix.length();
-            }
-        }
-    }
-
-
-
-
 }
@@ -1,9 +1,14 @@
 package spl.lae;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
+import java.util.List;
 
 import parser.*;
+import scheduling.ExecutorOptions;
+import scheduling.TraceRecorder;
 
 public class Main {
     public static void main(String[] args) throws IOException {
@@ -13,10 +18,21 @@ public class Main {
             return;
         }
         int numThreads = Integer.parseInt(args[0]);
+        if (args[1].equals("--batch")) {
+            runBatch(numThreads, args);
+            return;
+        }
+        if (args[1].equals("--serve")) {
+            serve(numThreads, args);
+            return;
+        }
         String inputPath = args[1];
         String outputPath = args[2];
-        LinearAlgebraEngine lae = new LinearAlgebraEngine(numThreads);
-        InputParser inputParser = new InputParser();
+        // Optional 4th argument: --trace writes a Chrome trace_event timeline next to the output
+        TraceRecorder tracer = args.length > 3 && args[3].equals("--trace") ? new TraceRecorder() : null;
+        LinearAlgebraEngine lae = new LinearAlgebraEngine(numThreads, new ExecutorOptions().trace(tracer));
+        // Large inputs are decoded on as many threads as the engine computes with
+        InputParser inputParser = new InputParser(numThreads);
         try {
             ComputationNode root = inputParser.parse(inputPath);
             ComputationNode res = lae.run(root);
@@ -26,8 +42,71 @@ public class Main {
         } catch (RuntimeException e) {
             OutputWriter.write("Error: " + e.getMessage(), outputPath);
         } finally {
+            lae.shutdown();
             System.out.println(lae.getWorkerReport());
+            if (tracer != null) {
+                String tracePath = tracePath(outputPath);
+                tracer.write(tracePath);
+                System.out.println("Trace written to " + tracePath);
+            }
         }
 
     }
+
+    /**
+     * numThreads --batch input outputDir [--trace]: every job of the batch runs on one engine (see BatchRunner).
+     */
+    private static void runBatch(int numThreads, String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Error: Missing arguments.");
+            return;
+        }
+        Path outputDir = Path.of(args[3]);
+        Files.createDirectories(outputDir);
+        List<BatchRunner.Source> sources = BatchRunner.sources(Path.of(args[2]), outputDir);
+        TraceRecorder tracer = args.length > 4 && args[4].equals("--trace") ? new TraceRecorder() : null;
+        LinearAlgebraEngine lae = new LinearAlgebraEngine(numThreads, new ExecutorOptions().trace(tracer));
+        BatchRunner batch = new BatchRunner(lae, new InputParser(numThreads));
+        long start = System.nanoTime();
+        try {
+            batch.run(sources);
+        } finally {
+            lae.shutdown();
+            System.out.println(lae.getWorkerReport());
+            System.out.printf("Batch: %d jobs | Failed: %d | Time: %.1f ms%n", batch.getJobCount(),
+                    batch.getFailedCount(), (System.nanoTime() - start) / 1_000_000.0);
+            if (tracer != null) {
+                String tracePath = outputDir.resolve("batch.trace.json").toString();
+                tracer.write(tracePath);
+                System.out.println("Trace written to " + tracePath);
+            }
+        }
+    }
+
+    /**
+     * numThreads --serve port|socketPath [maxConnections [maxEvaluations]]: keep one engine warm and answer
+     * requests over a local socket (see EngineServer) until the process is stopped.
+     */
+    private static void serve(int numThreads, String[] args) throws IOException {
+        int maxConnections = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int maxEvaluations = args.length > 4 ? Integer.parseInt(args[4]) : maxConnections;
+        LinearAlgebraEngine lae = new LinearAlgebraEngine(numThreads);
+        EngineServer server = new EngineServer(lae, maxConnections, maxEvaluations, Path.of("").toAbsolutePath());
+        System.out.println("Listening on " + server.start(EngineServer.address(args[2])));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            lae.shutdown();
+            System.out.println(lae.getWorkerReport());
+        }));
+    }
+
+    /**
+     * out.json -> out.trace.json, in the same directory as the output.
+     */
+    static String tracePath(String outputPath) {
+        if (outputPath.endsWith(".json")) {
+            return outputPath.substring(0, outputPath.length() - ".json".length()) + ".trace.json";
+        }
+        return outputPath + ".trace.json";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+import parser.*;
+import scheduling.*;
+import spl.lae.LinearAlgebraEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the TiredExecutor backend with the fork/join backend on the engine.
+ * Runs every valid workload in test_jsons, then a few larger generated ones.
+ * Not a JUnit test; run it by hand after `mvn test-compile`:
+ *   java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *       BackendBenchmark [threads] [repetitions]
+ */
+public class BackendBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        File[] files = new File("test_jsons").listFiles((dir, name) -> name.endsWith(".json"));
+        if (files != null) {
+            java.util.Arrays.sort(files);
+            for (File file : files) {
+                Supplier<ComputationNode> parse = () -> {
+                    try {
+                        return new InputParser().parse(file.getPath());
+                    } catch (Exception e) {
+                        return null;
+                    }
+                };
+                ComputationNode probe = parse.get();
+                if (probe == null || !resolves(probe, threads)) {
+                    continue; // the invalid-input cases measure nothing useful
+                }
+                compare(file.getName(), parse, threads, reps);
+            }
+        }
+
+        Random random = new Random(42);
+        for (int n : new int[]{100, 250, 500}) {
+            double[][] a = randomMatrix(random, n, n);
+            double[][] b = randomMatrix(random, n, n);
+            compare("generated " + n + "x" + n + " multiply", () -> binary("*", a, b), threads, Math.max(3, reps / 4));
+            compare("generated " + n + "x" + n + " add", () -> binary("+", a, b), threads, reps);
+            compare("generated " + n + "x" + n + " negate", () -> new ComputationNode("-",
+                    List.of(new ComputationNode(copy(a)))), threads, reps);
+        }
+    }
+
+    private static void compare(String name, Supplier<ComputationNode> workload, int threads, int reps) throws Exception {
+        System.out.printf("%-40s", name);
+        for (Backend backend : Backend.values()) {
+            ExecutorOptions options = new ExecutorOptions().backend(backend);
+            LinearAlgebraEngine engine = new LinearAlgebraEngine(threads, options);
+            try {
+                // Warm-up so both backends are measured with compiled code
+                for (int r = 0; r < Math.max(1, reps / 4); r++) {
+                    evaluate(engine, workload.get());
+                }
+                long total = 0;
+                for (int r = 0; r < reps; r++) {
+                    ComputationNode root = workload.get();
+                    long start = System.nanoTime();
+                    evaluate(engine, root);
+                    total += System.nanoTime() - start;
+                }
+                System.out.printf("  %-9s %10.3f ms", backend, total / 1_000_000.0 / reps);
+            } finally {
+                engine.shutdown();
+            }
+        }
+        System.out.println();
+    }
+
+    private static void evaluate(LinearAlgebraEngine engine, ComputationNode root) {
+        engine.run(root);
+    }
+
+    private static boolean resolves(ComputationNode root, int threads) {
+        LinearAlgebraEngine engine = new LinearAlgebraEngine(threads);
+        try {
+            engine.run(root);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static ComputationNode binary(String op, double[][] a, double[][] b) {
+        List<ComputationNode> children = new ArrayList<>();
+        children.add(new ComputationNode(copy(a)));
+        children.add(new ComputationNode(copy(b)));
+        return new ComputationNode(op, children);
+    }
+
+    private static double[][] randomMatrix(Random random, int rows, int cols) {
+        double[][] m = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                m[i][j] = random.nextDouble() * 10 - 5;
+            }
+        }
+        return m;
+    }
+
+    private static double[][] copy(double[][] m) {
+        double[][] c = new double[m.length][];
+        for (int i = 0; i < m.length; i++) {
+            c[i] = m[i].clone();
+        }
+        return c;
+    }
+}
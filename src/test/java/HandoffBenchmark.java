@@ -0,0 +1,48 @@
+import scheduling.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the queue handoff with the spin-park handoff.
+ * Not a JUnit test; run it by hand after `mvn test-compile`:
+ *   java -cp target/classes:target/test-classes HandoffBenchmark [threads] [rounds]
+ */
+public class HandoffBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        for (boolean spin : new boolean[]{false, true}) {
+            TiredExecutor executor = new TiredExecutor(threads, new ExecutorOptions().spinHandoff(spin));
+            try {
+                // Warm-up so the JIT has compiled the dispatch path before we measure
+                roundTrips(executor, threads, rounds / 4);
+                long nanos = roundTrips(executor, threads, rounds);
+                System.out.printf("%-10s threads=%d rounds=%d  %.2f us per batch of %d tiny tasks%n",
+                        spin ? "spin-park" : "queue", threads, rounds,
+                        nanos / 1_000.0 / rounds, threads);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Submit one tiny task per worker and wait for it, over and over.
+     * Dominated by handoff and wake-up latency rather than by the work itself.
+     */
+    private static long roundTrips(TiredExecutor executor, int threads, int rounds) {
+        double[] sink = new double[threads];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int idx = i;
+            tasks.add(() -> sink[idx] += Math.sqrt(idx));
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            executor.submitAll(tasks);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,155 @@
+import parser.*;
+import spl.lae.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestBatchRunner {
+
+    private Path dir;
+    private LinearAlgebraEngine lae;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory("batch");
+        lae = new LinearAlgebraEngine(2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        lae.shutdown();
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            for (Path f : files.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                Files.delete(f);
+            }
+        }
+    }
+
+    private static double result(Path output) throws Exception {
+        return new com.fasterxml.jackson.databind.ObjectMapper().readTree(output.toFile())
+                .get("result").get(0).get(0).asDouble();
+    }
+
+    private static String error(Path output) throws Exception {
+        return new com.fasterxml.jackson.databind.ObjectMapper().readTree(output.toFile()).get("error").asText();
+    }
+
+    @Test
+    @DisplayName("Directory batches run every file, and every root of a .jsonl file, on one engine")
+    void testDirectoryBatch() throws Exception {
+        Path in = Files.createDirectory(dir.resolve("in"));
+        Path out = Files.createDirectory(dir.resolve("out"));
+        Files.writeString(in.resolve("a.json"), "{\"operator\": \"+\", \"operands\": [[[1]], [[2]]]}");
+        Files.writeString(in.resolve("b.json"), "{\"operator\": \"+\", \"operands\": [[[1, 2]], [[2]]]}");
+        Files.writeString(in.resolve("c.jsonl"), "{\"operator\": \"-\", \"operands\": [[[4]]]}\n"
+                + "{\"operator\": \"*\", \"operands\": [[[2]], [[5]]]}\n");
+        Files.writeString(in.resolve("notes.md"), "not an input");
+
+        List<BatchRunner.Source> sources = BatchRunner.sources(in, out);
+        assertEquals(3, sources.size());
+        BatchRunner batch = new BatchRunner(lae, new InputParser());
+        batch.run(sources);
+
+        assertEquals(4, batch.getJobCount());
+        assertEquals(1, batch.getFailedCount());
+        assertEquals(3.0, result(out.resolve("a.json")), 0.0);
+        assertTrue(error(out.resolve("b.json")).startsWith("Error: "));
+        assertEquals(-4.0, result(out.resolve("c.0.json")), 0.0);
+        assertEquals(10.0, result(out.resolve("c.1.json")), 0.0);
+        // The engine is still usable after the batch
+        assertEquals(2.0, lae.run(new ComputationNode(ComputationNodeType.NEGATE,
+                new java.util.ArrayList<>(List.of(new ComputationNode(new double[][]{{-2}}))))).getMatrix()[0][0], 0.0);
+    }
+
+    @Test
+    @DisplayName("Manifests resolve paths against their own directory and may name outputs")
+    void testManifestBatch() throws Exception {
+        Files.writeString(dir.resolve("x.json"), "{\"operator\": \"T\", \"operands\": [[[1, 2]]]}");
+        Files.writeString(dir.resolve("bad.json"), "{\"operator\": \"+\", \"operands\": [[[1]]");
+        Files.writeString(dir.resolve("jobs.txt"), "# nightly\nx.json\tresults/x-out.json\n\nbad.json\n");
+        Files.createDirectory(dir.resolve("results"));
+
+        List<BatchRunner.Source> sources = BatchRunner.sources(dir.resolve("jobs.txt"), dir.resolve("results"));
+        BatchRunner batch = new BatchRunner(lae, new InputParser());
+        batch.run(sources);
+        assertEquals(2, batch.getJobCount());
+        assertEquals(1, batch.getFailedCount());
+        assertEquals(2.0, new com.fasterxml.jackson.databind.ObjectMapper()
+                .readTree(dir.resolve("results/x-out.json").toFile()).get("result").get(1).get(0).asDouble(), 0.0);
+        assertTrue(Files.exists(dir.resolve("results/bad.json")));
+
+        // Writing results next to the inputs would overwrite them
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.sources(dir, dir));
+
+        // a.json and a.npy would both default to a.json
+        Path same = Files.createDirectory(dir.resolve("same"));
+        Files.writeString(same.resolve("a.json"), "{\"operator\": \"-\", \"operands\": [[[1]]]}");
+        BinaryMatrix.writeNpy(new double[][]{{1}}, same.resolve("a.npy"));
+        IllegalArgumentException clash = assertThrows(IllegalArgumentException.class,
+                () -> BatchRunner.sources(same, dir.resolve("results")));
+        assertTrue(clash.getMessage().contains("would both write"));
+        // So would two manifest lines naming the same output
+        Files.writeString(dir.resolve("clash.txt"), "x.json\tout.json\nbad.json\tout.json\n");
+        assertThrows(IllegalArgumentException.class, () -> BatchRunner.sources(dir.resolve("clash.txt"), dir));
+    }
+
+    @Test
+    @DisplayName("A shallow pipeline keeps every job's result with its own output")
+    void testPipelineOrder() throws Exception {
+        StringBuilder jobs = new StringBuilder();
+        for (int k = 0; k < 40; k++) {
+            // Every fifth job fails to compute, which must not shift the outputs after it
+            String right = k % 5 == 4 ? "[[1, 1]]" : "[[" + k + "]]";
+            jobs.append("{\"operator\": \"+\", \"operands\": [[[1]], ").append(right).append("]}\n");
+        }
+        jobs.append("{\"operator\": \"+\", \"operands\": [[[1]]\n"); // Truncated: stops the file here
+        Files.writeString(dir.resolve("many.jsonl"), jobs);
+        Path out = Files.createDirectory(dir.resolve("out"));
+
+        BatchRunner batch = new BatchRunner(lae, new InputParser(), 1);
+        batch.run(BatchRunner.sources(dir.resolve("many.jsonl"), out));
+        assertEquals(41, batch.getJobCount());
+        assertEquals(9, batch.getFailedCount());
+        for (int k = 0; k < 40; k++) {
+            if (k % 5 == 4) {
+                assertTrue(error(out.resolve("many." + k + ".json")).startsWith("Error: "));
+            } else {
+                assertEquals(k + 1.0, result(out.resolve("many." + k + ".json")), 0.0);
+            }
+        }
+        assertTrue(error(out.resolve("many.40.json")).startsWith("Error: "));
+        assertThrows(IllegalArgumentException.class, () -> new BatchRunner(lae, new InputParser(), 0));
+    }
+
+    @Test
+    @DisplayName("An Error while parsing ends the batch instead of hanging it")
+    void testParseError() throws Exception {
+        Files.writeString(dir.resolve("a.jsonl"), "{\"operator\": \"-\", \"operands\": [[[3]]]}\n");
+        Files.writeString(dir.resolve("b.jsonl"), "{\"operator\": \"-\", \"operands\": [[[4]]]}\n");
+        Path out = Files.createDirectory(dir.resolve("out"));
+        InputParser failing = new InputParser() {
+            @Override
+            public int parseEach(String inputPath, java.util.function.Consumer<ComputationNode> roots)
+                    throws java.text.ParseException {
+                if (inputPath.endsWith("b.jsonl")) {
+                    throw new OutOfMemoryError("Simulated");
+                }
+                return super.parseEach(inputPath, roots);
+            }
+        };
+        BatchRunner batch = new BatchRunner(lae, failing, 1);
+        List<BatchRunner.Source> sources = BatchRunner.sources(dir, out);
+        OutOfMemoryError error = assertTimeoutPreemptively(java.time.Duration.ofSeconds(10),
+                () -> assertThrows(OutOfMemoryError.class, () -> batch.run(sources)));
+        assertEquals("Simulated", error.getMessage());
+        assertEquals(-3.0, result(out.resolve("a.0.json")), 0.0);
+        assertEquals(1, batch.getJobCount());
+    }
+}
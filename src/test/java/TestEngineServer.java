@@ -0,0 +1,166 @@
+import spl.lae.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestEngineServer {
+
+    private static final com.fasterxml.jackson.databind.ObjectMapper MAPPER = new com.fasterxml.jackson.databind.ObjectMapper();
+
+    private LinearAlgebraEngine lae;
+    private EngineServer server;
+
+    @BeforeEach
+    void setUp() {
+        lae = new LinearAlgebraEngine(2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+        lae.shutdown();
+    }
+
+    /**
+     * A connected client: send a line, read a response line.
+     */
+    private static final class Client implements AutoCloseable {
+        final SocketChannel channel;
+        final BufferedReader in;
+        final OutputStream out;
+
+        Client(SocketAddress address) throws Exception {
+            channel = address instanceof UnixDomainSocketAddress
+                    ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+            channel.connect(address);
+            in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            out = Channels.newOutputStream(channel);
+        }
+
+        com.fasterxml.jackson.databind.JsonNode request(String json) throws Exception {
+            out.write((json + "\n").getBytes(StandardCharsets.UTF_8));
+            return response();
+        }
+
+        com.fasterxml.jackson.databind.JsonNode response() throws Exception {
+            String line = in.readLine();
+            assertNotNull(line);
+            return MAPPER.readTree(line);
+        }
+
+        @Override
+        public void close() throws java.io.IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Answers requests in order on one connection, with timing, and survives bad ones")
+    void testRequests() throws Exception {
+        server = new EngineServer(lae, 4, Path.of(""));
+        SocketAddress address = server.start(EngineServer.address("0"));
+        try (Client client = new Client(address)) {
+            com.fasterxml.jackson.databind.JsonNode sum = client.request("{\"operator\": \"+\", \"operands\": [[[1, 2]], [[3, 4]]]}");
+            assertEquals(4.0, sum.get("result").get(0).get(0).asDouble(), 0.0);
+            assertEquals(6.0, sum.get("result").get(0).get(1).asDouble(), 0.0);
+            com.fasterxml.jackson.databind.JsonNode timing = sum.get("timing");
+            for (String field : new String[]{"queue_ms", "parse_ms", "compute_ms", "total_ms"}) {
+                assertTrue(timing.get(field).asDouble() >= 0, field);
+            }
+            assertTrue(timing.get("total_ms").asDouble() >= timing.get("compute_ms").asDouble());
+
+            com.fasterxml.jackson.databind.JsonNode bad = client.request("{\"operator\": \"+\", \"operands\": [[[1]]");
+            assertTrue(bad.get("error").asText().startsWith("Error: "));
+            com.fasterxml.jackson.databind.JsonNode mismatch = client.request("{\"operator\": \"+\", \"operands\": [[[1]], [[1, 2]]]}");
+            assertTrue(mismatch.get("error").asText().startsWith("Error: "));
+
+            com.fasterxml.jackson.databind.JsonNode again = client.request("{\"operator\": \"-\", \"operands\": [[[5]]]}");
+            assertEquals(-5.0, again.get("result").get(0).get(0).asDouble(), 0.0);
+        }
+    }
+
+    @Test
+    @DisplayName("Clients beyond the connection limit are turned away")
+    void testConnectionLimit() throws Exception {
+        server = new EngineServer(lae, 1, Path.of(""));
+        SocketAddress address = server.start(EngineServer.address("0"));
+        try (Client first = new Client(address)) {
+            // A served request proves the first client holds the only slot
+            assertNotNull(first.request("{\"operator\": \"T\", \"operands\": [[[1]]]}").get("result"));
+            try (Client second = new Client(address)) {
+                assertEquals("Error: Server busy", second.response().get("error").asText());
+                assertNull(second.in.readLine());
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new EngineServer(lae, 0, Path.of("")));
+    }
+
+    @Test
+    @DisplayName("Oversized request lines get an error and the connection keeps working")
+    void testRequestTooLong() throws Exception {
+        server = new EngineServer(lae, 1, Path.of(""));
+        server.setMaxRequestBytes(64);
+        SocketAddress address = server.start(EngineServer.address("0"));
+        try (Client client = new Client(address)) {
+            String big = "{\"operator\": \"-\", \"operands\": [[[" + "1, ".repeat(100) + "1]]]}";
+            assertEquals("Error: Request is longer than 64 bytes", client.request(big).get("error").asText());
+            assertEquals(-5.0, client.request("{\"operator\": \"-\", \"operands\": [[[5]]]}")
+                    .get("result").get(0).get(0).asDouble(), 0.0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> server.setMaxRequestBytes(0));
+    }
+
+    @Test
+    @DisplayName("Refs outside the base directory are refused")
+    void testRefOutsideBase() throws Exception {
+        Path dir = Files.createTempDirectory("lae");
+        Path base = Files.createDirectory(dir.resolve("base"));
+        parser.BinaryMatrix.writeNpy(new double[][]{{7}}, dir.resolve("secret.npy"));
+        server = new EngineServer(lae, 1, base);
+        SocketAddress address = server.start(EngineServer.address("0"));
+        try (Client client = new Client(address)) {
+            com.fasterxml.jackson.databind.JsonNode response =
+                    client.request("{\"operator\": \"-\", \"operands\": [{\"ref\": \"../secret.npy\"}]}");
+            assertNull(response.get("result"));
+            assertTrue(response.get("error").asText().contains("outside the base directory"));
+        } finally {
+            Files.delete(dir.resolve("secret.npy"));
+            Files.delete(base);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("Serves over a Unix-domain socket and removes it on close")
+    void testUnixSocket() throws Exception {
+        Path dir = Files.createTempDirectory("lae");
+        Path socket = dir.resolve("lae.sock");
+        server = new EngineServer(lae, 2, dir);
+        SocketAddress address = server.start(EngineServer.address(socket.toString()));
+        try (Client client = new Client(address)) {
+            assertEquals(2.0, client.request("{\"operator\": \"*\", \"operands\": [[[1]], [[2]]]}")
+                    .get("result").get(0).get(0).asDouble(), 0.0);
+        }
+        server.close();
+        server = null;
+        assertFalse(Files.exists(socket));
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,82 @@
+import scheduling.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestForkJoinExecutor {
+
+    private ForkJoinExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Runnable> countingTasks(int count, int[] hits) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int idx = i;
+            tasks.add(() -> hits[idx]++);
+        }
+        return tasks;
+    }
+
+    @Test
+    @DisplayName("Every task of a batch runs exactly once")
+    void testRunsEveryTaskOnce() {
+        for (int grain : new int[]{0, 1, 7, 1000}) {
+            executor = new ForkJoinExecutor(4, grain);
+            int[] hits = new int[257];
+            executor.submitAll(countingTasks(hits.length, hits));
+            for (int h : hits) {
+                assertEquals(1, h, "grain " + grain);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Batch is split down to the grain size")
+    void testSplitsToGrain() {
+        executor = new ForkJoinExecutor(2, 4);
+        executor.submitAll(countingTasks(64, new int[64]));
+        String report = executor.getWorkerReport();
+        assertTrue(report.contains("Leaf Ranges: 16"), report);
+        assertTrue(report.contains("Batches: 1 | Tasks: 64"), report);
+    }
+
+    @Test
+    @DisplayName("A failing task doesn't stop its siblings and is rethrown")
+    void testFailurePropagates() {
+        executor = new ForkJoinExecutor(3, 1);
+        int[] hits = new int[20];
+        List<Runnable> tasks = countingTasks(hits.length, hits);
+        tasks.set(5, () -> {
+            throw new IllegalArgumentException("bad row");
+        });
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> executor.submitAll(tasks));
+        assertEquals("bad row", e.getMessage());
+        for (int i = 0; i < hits.length; i++) {
+            if (i != 5) {
+                assertEquals(1, hits[i]);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid arguments are rejected")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new ForkJoinExecutor(0));
+        assertThrows(IllegalArgumentException.class, () -> new ForkJoinExecutor(2, -1));
+        assertThrows(IllegalArgumentException.class, () -> new ExecutorOptions().grainSize(-1));
+        executor = new ForkJoinExecutor(2);
+        assertThrows(IllegalArgumentException.class, () -> executor.submitAll(null));
+        executor.submitAll(new ArrayList<>());
+    }
+}
@@ -0,0 +1,308 @@
+import parser.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestInputParser {
+
+    private static final double DELTA = 0.0001;
+
+    private static ComputationNode parseText(String json) throws Exception {
+        Path file = Files.createTempFile("input", ".json");
+        try {
+            Files.writeString(file, json);
+            return new InputParser().parse(file.toString());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Parses operators and matrices")
+    void testParseExpression() throws Exception {
+        ComputationNode root = parseText("{\"operator\": \"*\", \"operands\": ["
+                + "[[1.5, -2], [3e2, 4]], {\"operator\": \"-\", \"operands\": [[[1, 2], [3, 4]]]}]}");
+        assertEquals(ComputationNodeType.MULTIPLY, root.getNodeType());
+        assertEquals(2, root.getChildren().size());
+        double[][] m = root.getChildren().get(0).getMatrix();
+        assertEquals(1.5, m[0][0], DELTA);
+        assertEquals(-2.0, m[0][1], DELTA);
+        assertEquals(300.0, m[1][0], DELTA);
+        ComputationNode negate = root.getChildren().get(1);
+        assertEquals(ComputationNodeType.NEGATE, negate.getNodeType());
+        assertEquals(4.0, negate.getChildren().get(0).getMatrix()[1][1], DELTA);
+    }
+
+    @Test
+    @DisplayName("Field order doesn't matter and unknown fields are ignored")
+    void testFieldOrder() throws Exception {
+        ComputationNode root = parseText("{\"operands\": [[[1]], [[2]]], \"comment\": {\"a\": [1, 2]}, \"operator\": \"+\"}");
+        assertEquals(ComputationNodeType.ADD, root.getNodeType());
+        assertEquals(2.0, root.getChildren().get(1).getMatrix()[0][0], DELTA);
+    }
+
+    @Test
+    @DisplayName("Wide first row grows the row buffer")
+    void testWideRows() throws Exception {
+        StringBuilder row = new StringBuilder("[");
+        for (int j = 0; j < 100; j++) {
+            row.append(j == 0 ? "" : ",").append(j);
+        }
+        row.append("]");
+        ComputationNode root = parseText("{\"operator\": \"T\", \"operands\": [[" + row + "," + row + "]]}");
+        double[][] m = root.getChildren().get(0).getMatrix();
+        assertEquals(2, m.length);
+        assertEquals(100, m[1].length);
+        assertEquals(99.0, m[1][99], DELTA);
+    }
+
+    @Test
+    @DisplayName("Malformed inputs are rejected with ParseException")
+    void testMalformedInputs() {
+        assertThrows(ParseException.class, () -> parseText("[]"));
+        assertThrows(ParseException.class, () -> parseText("[1, 2, 3]"));
+        assertThrows(ParseException.class, () -> parseText("[[1, 2], [3]]"));
+        assertThrows(ParseException.class, () -> parseText("[[1], [2, 3]]"));
+        assertThrows(ParseException.class, () -> parseText("[[1], 2]"));
+        assertThrows(ParseException.class, () -> parseText("{\"operator\": \"+\"}"));
+        assertThrows(ParseException.class, () -> parseText("{\"operator\": \"+\", \"operands\": 5}"));
+        assertThrows(ParseException.class, () -> parseText(""));
+        assertThrows(ParseException.class, () -> parseText("{\"operator\": \"+\", \"operands\": [[[1]"));
+        assertThrows(ParseException.class, () -> new InputParser().parse("does/not/exist.json"));
+        assertThrows(IllegalArgumentException.class, () -> parseText("{\"operator\": \"%\", \"operands\": []}"));
+    }
+
+    @Test
+    @DisplayName("Parses every sample input that the tree parser accepted")
+    void testSampleInputs() throws Exception {
+        com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+        File sample = new File("test_jsons/test_large_50x50_multiply.json");
+        ComputationNode root = new InputParser().parse(sample.getPath());
+        com.fasterxml.jackson.databind.JsonNode tree = mapper.readTree(sample);
+        for (int k = 0; k < 2; k++) {
+            double[][] m = root.getChildren().get(k).getMatrix();
+            com.fasterxml.jackson.databind.JsonNode expected = tree.get("operands").get(k);
+            assertEquals(expected.size(), m.length);
+            for (int i = 0; i < m.length; i++) {
+                for (int j = 0; j < m[i].length; j++) {
+                    assertEquals(expected.get(i).get(j).asDouble(), m[i][j], 0.0);
+                }
+            }
+        }
+        ComputationNode empty = new InputParser().parse("test_jsons/test_invalid_empty_array.json");
+        assertEquals(0, empty.getChildren().size());
+    }
+
+    private static String bigMatrix(int rows, int cols, int shortRow) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i == 0 ? "" : ",\n").append("[");
+            int width = i == shortRow ? cols - 1 : cols;
+            for (int j = 0; j < width; j++) {
+                sb.append(j == 0 ? "" : ", ").append(i * 0.5 + j * 1.25);
+            }
+            sb.append("]");
+        }
+        return sb.append("]").toString();
+    }
+
+    @Test
+    @DisplayName("Parallel mode decodes large files the same as the streaming pass")
+    void testParallelMatchesSequential() throws Exception {
+        // Two leaves of well over a megabyte each, so both are cut into several chunks
+        String json = "{\"operator\": \"+\", \"operands\": [" + bigMatrix(500, 300, -1) + ", "
+                + "{\"operator\": \"-\", \"operands\": [" + bigMatrix(500, 300, -1) + "]}, [[1]]]}";
+        Path file = Files.createTempFile("big", ".json");
+        try {
+            Files.writeString(file, json);
+            ComputationNode sequential = new InputParser().parse(file.toString());
+            ComputationNode parallel = new InputParser(4).parse(file.toString());
+            assertEquals(ComputationNodeType.ADD, parallel.getNodeType());
+            assertEquals(3, parallel.getChildren().size());
+            assertArrayEquals(sequential.getChildren().get(0).getMatrix(), parallel.getChildren().get(0).getMatrix());
+            assertArrayEquals(sequential.getChildren().get(1).getChildren().get(0).getMatrix(),
+                    parallel.getChildren().get(1).getChildren().get(0).getMatrix());
+            assertEquals(1.0, parallel.getChildren().get(2).getMatrix()[0][0], DELTA);
+            assertEquals(499 * 0.5 + 299 * 1.25, parallel.getChildren().get(0).getMatrix()[499][299], DELTA);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel mode reports ragged rows in any chunk")
+    void testParallelRaggedRows() throws Exception {
+        for (int shortRow : new int[]{5, 399}) {
+            Path file = Files.createTempFile("ragged", ".json");
+            try {
+                Files.writeString(file, "{\"operator\": \"-\", \"operands\": [" + bigMatrix(400, 400, shortRow) + "]}");
+                assertThrows(ParseException.class, () -> new InputParser(4).parse(file.toString()));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new InputParser(0));
+    }
+
+    @Test
+    @DisplayName("Binary .npy and raw files round-trip, standalone or referenced from JSON")
+    void testBinaryLeaves() throws Exception {
+        double[][] matrix = {{1.5, -2, 3}, {4, 5e10, -6.25}};
+        Path dir = Files.createTempDirectory("binary");
+        try {
+            Path npy = dir.resolve("a.npy");
+            Path raw = dir.resolve("b.bin");
+            BinaryMatrix.writeNpy(matrix, npy);
+            BinaryMatrix.writeRaw(matrix, raw);
+            assertTrue(BinaryMatrix.isBinary(npy));
+            assertTrue(BinaryMatrix.isBinary(raw));
+            assertArrayEquals(new int[]{2, 3}, BinaryMatrix.shape(npy));
+            // .npy data starts on a 64-byte boundary
+            assertEquals(0, (Files.size(npy) - 6 * 8) % 64);
+
+            ComputationNode standalone = new InputParser().parse(npy.toString());
+            assertEquals(ComputationNodeType.MATRIX, standalone.getNodeType());
+            assertArrayEquals(matrix, standalone.getMatrix());
+            assertArrayEquals(matrix, new InputParser().parse(raw.toString()).getMatrix());
+
+            Path json = dir.resolve("expr.json");
+            Files.writeString(json, "{\"operator\": \"+\", \"operands\": [{\"ref\": \"a.npy\"}, {\"ref\": \"b.bin\"}]}");
+            ComputationNode root = new InputParser().parse(json.toString());
+            assertArrayEquals(matrix, root.getChildren().get(0).getMatrix());
+            assertArrayEquals(matrix, root.getChildren().get(1).getMatrix());
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path f : files.toList()) {
+                    Files.delete(f);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static Path npyFile(Path dir, String header, byte[] data) throws Exception {
+        byte[] dict = header.getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(10 + dict.length + data.length)
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 1, 0}).putShort((short) dict.length).put(dict).put(data);
+        Path file = Files.createTempFile(dir, "m", ".npy");
+        Files.write(file, buffer.array());
+        return file;
+    }
+
+    @Test
+    @DisplayName("Reads Fortran-order, big-endian and integer .npy files and rejects bad ones")
+    void testNpyVariants() throws Exception {
+        Path dir = Files.createTempDirectory("npy");
+        try {
+            // 2x3 in column order: columns (1, 4), (2, 5), (3, 6)
+            java.nio.ByteBuffer fortran = java.nio.ByteBuffer.allocate(48).order(java.nio.ByteOrder.BIG_ENDIAN);
+            for (double v : new double[]{1, 4, 2, 5, 3, 6}) {
+                fortran.putDouble(v);
+            }
+            Path f = npyFile(dir, "{'descr': '>f8', 'fortran_order': True, 'shape': (2, 3), }\n", fortran.array());
+            assertArrayEquals(new double[][]{{1, 2, 3}, {4, 5, 6}}, BinaryMatrix.read(f));
+
+            java.nio.ByteBuffer ints = java.nio.ByteBuffer.allocate(8).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            ints.putInt(7).putInt(-8);
+            Path i = npyFile(dir, "{'descr': '<i4', 'fortran_order': False, 'shape': (1, 2), }\n", ints.array());
+            assertArrayEquals(new double[][]{{7, -8}}, BinaryMatrix.read(i));
+
+            Path vector = npyFile(dir, "{'descr': '<f8', 'fortran_order': False, 'shape': (2,), }\n", new byte[16]);
+            assertThrows(ParseException.class, () -> BinaryMatrix.read(vector));
+            Path empty = npyFile(dir, "{'descr': '<f8', 'fortran_order': False, 'shape': (0, 3), }\n", new byte[0]);
+            assertThrows(ParseException.class, () -> BinaryMatrix.read(empty));
+            Path text = npyFile(dir, "{'descr': '<U8', 'fortran_order': False, 'shape': (1, 1), }\n", new byte[32]);
+            assertThrows(ParseException.class, () -> BinaryMatrix.read(text));
+            Path truncated = npyFile(dir, "{'descr': '<f8', 'fortran_order': False, 'shape': (4, 4), }\n", new byte[8]);
+            assertThrows(ParseException.class, () -> new InputParser().parse(truncated.toString()));
+            // Version 2 headers give a 4-byte length: one past the end of the file, one empty
+            for (int length : new int[]{0x7FFFFFF0, 0}) {
+                Path bad = dir.resolve("v2-" + length + ".npy");
+                Files.write(bad, java.nio.ByteBuffer.allocate(32).order(java.nio.ByteOrder.LITTLE_ENDIAN)
+                        .put(new byte[]{(byte) 0x93, 'N', 'U', 'M', 'P', 'Y', 2, 0}).putInt(length).array());
+                assertThrows(ParseException.class, () -> BinaryMatrix.read(bad));
+            }
+
+            Path json = dir.resolve("expr.json");
+            Files.writeString(json, "{\"operator\": \"-\", \"operands\": [{\"ref\": \"missing.npy\"}]}");
+            assertThrows(ParseException.class, () -> new InputParser().parse(json.toString()));
+            Files.writeString(json, "{\"operator\": \"-\", \"operands\": [{\"ref\": 5}]}");
+            assertThrows(ParseException.class, () -> new InputParser().parse(json.toString()));
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path f : files.toList()) {
+                    Files.delete(f);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("Names bound in \"let\" are shared nodes, not copies")
+    void testLetBindings() throws Exception {
+        ComputationNode root = parseText("{\"let\": {\"A\": [[1, 2], [3, 4]], "
+                + "\"S\": {\"operator\": \"*\", \"operands\": [\"A\", \"A\"]}}, "
+                + "\"in\": {\"operator\": \"+\", \"operands\": [\"S\", {\"operator\": \"T\", \"operands\": [\"S\"]}]}}");
+        assertEquals(ComputationNodeType.ADD, root.getNodeType());
+        ComputationNode s = root.getChildren().get(0);
+        assertEquals(ComputationNodeType.MULTIPLY, s.getNodeType());
+        assertSame(s, root.getChildren().get(1).getChildren().get(0));
+        assertSame(s.getChildren().get(0), s.getChildren().get(1));
+
+        // A nested "let" sees the outer names and may shadow them
+        ComputationNode nested = parseText("{\"let\": {\"A\": [[1]], \"B\": [[2]]}, \"in\": {\"let\": {\"A\": [[5]]}, "
+                + "\"in\": {\"operator\": \"+\", \"operands\": [\"A\", \"B\"]}}}");
+        assertEquals(5.0, nested.getChildren().get(0).getMatrix()[0][0], DELTA);
+        assertEquals(2.0, nested.getChildren().get(1).getMatrix()[0][0], DELTA);
+
+        assertThrows(ParseException.class, () -> parseText("{\"let\": {\"A\": [[1]]}, \"in\": \"B\"}"));
+        assertThrows(ParseException.class, () -> parseText("{\"let\": {\"A\": [[1]], \"A\": [[2]]}, \"in\": \"A\"}"));
+        assertThrows(ParseException.class, () -> parseText("{\"in\": \"A\", \"let\": {\"A\": [[1]]}}"));
+        assertThrows(ParseException.class, () -> parseText("{\"let\": {\"A\": [[1]]}}"));
+        assertThrows(ParseException.class, () -> parseText("{\"let\": {\"A\": \"A\"}, \"in\": \"A\"}"));
+        assertThrows(ParseException.class, () -> parseText("{\"operator\": \"-\", \"operands\": [\"A\"]}"));
+    }
+
+    @Test
+    @DisplayName("Refs in an in-memory document can't leave its base directory")
+    void testDocumentRefsConfined() throws Exception {
+        double[][] matrix = {{1, 2}};
+        Path dir = Files.createTempDirectory("refs");
+        Path base = Files.createDirectory(dir.resolve("base"));
+        Path outside = dir.resolve("secret.npy");
+        try {
+            BinaryMatrix.writeNpy(matrix, base.resolve("a.npy"));
+            BinaryMatrix.writeNpy(matrix, outside);
+            InputParser parser = new InputParser();
+            ComputationNode inside = parser.parseDocument("{\"operator\": \"-\", \"operands\": [{\"ref\": \"./a.npy\"}]}", base);
+            assertArrayEquals(matrix, inside.getChildren().get(0).getMatrix());
+
+            for (String ref : new String[]{"../secret.npy", outside.toString(), "link.npy"}) {
+                if (ref.equals("link.npy")) {
+                    Files.createSymbolicLink(base.resolve(ref), outside);
+                }
+                ParseException e = assertThrows(ParseException.class, () -> parser.parseDocument(
+                        "{\"operator\": \"-\", \"operands\": [{\"ref\": \"" + ref + "\"}]}", base));
+                assertTrue(e.getMessage().contains("outside the base directory"), e.getMessage());
+            }
+            // Files parsed from disk are trusted as before
+            Path json = base.resolve("expr.json");
+            Files.writeString(json, "{\"operator\": \"-\", \"operands\": [{\"ref\": \"../secret.npy\"}]}");
+            assertArrayEquals(matrix, new InputParser().parse(json.toString()).getChildren().get(0).getMatrix());
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+                for (Path f : files.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                    Files.delete(f);
+                }
+            }
+        }
+    }
+}
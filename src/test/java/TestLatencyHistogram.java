@@ -0,0 +1,50 @@
+import scheduling.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLatencyHistogram {
+
+    @Test
+    @DisplayName("Empty histogram reports zeros")
+    void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    @DisplayName("Percentiles are within the bucket precision")
+    void testPercentilePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v * 1_000); // 1us .. 10ms
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        long[][] expected = {{50, 5_000_000}, {90, 9_000_000}, {99, 9_900_000}};
+        for (long[] e : expected) {
+            long p = histogram.getPercentile(e[0]);
+            assertTrue(p >= e[1] && p <= e[1] + e[1] / 16, "p" + e[0] + " = " + p);
+        }
+        assertEquals(10_000_000, histogram.getPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Small values, negative values and merging")
+    void testSmallValuesAndMerge() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(3);
+        a.record(-5); // clamped to 0
+        b.record(7);
+        b.record(1_000_000);
+        a.add(b);
+        assertEquals(4, a.getCount());
+        assertEquals(3, a.getPercentile(50));
+        assertEquals(1_000_000, a.getMax());
+        assertThrows(IllegalArgumentException.class, () -> a.getPercentile(101));
+    }
+}
@@ -1,5 +1,6 @@
 import parser.*;
 import spl.lae.*;
+import scheduling.*;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +19,11 @@ class TestLinearAlgebraEngine {
         lae = new LinearAlgebraEngine(4);
     }
 
+    @AfterEach
+    void tearDown() {
+        lae.shutdown();
+    }
+
     // Basic Operations Tests
 
     @Test
@@ -372,4 +378,285 @@ class TestLinearAlgebraEngine {
         assertEquals(4.0, resultMatrix[3][0], DELTA);
         assertEquals(8.0, resultMatrix[3][1], DELTA);
     }
+
+    @Test
+    @DisplayName("Fork/join backend computes the same results")
+    void testForkJoinBackend() {
+        LinearAlgebraEngine forkJoin = new LinearAlgebraEngine(3, new ExecutorOptions().backend(Backend.FORK_JOIN).grainSize(1));
+        try {
+            double[][] m1 = {{1, 2}, {3, 4}, {5, 6}};
+            double[][] m2 = {{1, 0, 2}, {0, 1, 3}};
+            double[][] m3 = {{1, 1, 1}, {1, 1, 1}, {1, 1, 1}};
+
+            // -(m1 * m2) + m3
+            List<ComputationNode> mul = new ArrayList<>();
+            mul.add(new ComputationNode(m1));
+            mul.add(new ComputationNode(m2));
+            List<ComputationNode> neg = new ArrayList<>();
+            neg.add(new ComputationNode(ComputationNodeType.MULTIPLY, mul));
+            List<ComputationNode> add = new ArrayList<>();
+            add.add(new ComputationNode(ComputationNodeType.NEGATE, neg));
+            add.add(new ComputationNode(m3));
+            ComputationNode result = forkJoin.run(new ComputationNode(ComputationNodeType.ADD, add));
+
+            double[][] resultMatrix = result.getMatrix();
+            assertEquals(0.0, resultMatrix[0][0], DELTA);
+            assertEquals(-1.0, resultMatrix[0][1], DELTA);
+            assertEquals(-7.0, resultMatrix[0][2], DELTA);
+            assertEquals(-17.0, resultMatrix[1][2], DELTA);
+            assertEquals(-27.0, resultMatrix[2][2], DELTA);
+            assertTrue(forkJoin.getWorkerReport().contains("Backend: FORK_JOIN"));
+        } finally {
+            forkJoin.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Fork/join backend reports dimension errors")
+    void testForkJoinBackendDimensionError() {
+        LinearAlgebraEngine forkJoin = new LinearAlgebraEngine(2, new ExecutorOptions().backend(Backend.FORK_JOIN));
+        List<ComputationNode> children = new ArrayList<>();
+        children.add(new ComputationNode(new double[][]{{1, 2}}));
+        children.add(new ComputationNode(new double[][]{{1, 2, 3}}));
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> forkJoin.run(new ComputationNode(ComputationNodeType.ADD, children)));
+        } finally {
+            forkJoin.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("JFR events for nodes, batches and tasks")
+    void testFlightRecorderEvents() throws Exception {
+        java.nio.file.Path dump = java.nio.file.Files.createTempFile("lae", ".jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable("spl.lae.ComputeNode");
+            recording.enable("scheduling.Batch");
+            recording.enable("scheduling.TaskExecution");
+            recording.start();
+
+            List<ComputationNode> children = new ArrayList<>();
+            children.add(new ComputationNode(new double[][]{{1, 2, 3}, {4, 5, 6}}));
+            children.add(new ComputationNode(new double[][]{{1, 0}, {0, 1}, {1, 1}}));
+            lae.run(new ComputationNode(ComputationNodeType.MULTIPLY, children));
+
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<jdk.jfr.consumer.RecordedEvent> events = jdk.jfr.consumer.RecordingFile.readAllEvents(dump);
+        java.nio.file.Files.deleteIfExists(dump);
+
+        jdk.jfr.consumer.RecordedEvent node = events.stream()
+                .filter(e -> e.getEventType().getName().equals("spl.lae.ComputeNode"))
+                .findFirst().orElseThrow();
+        assertEquals("MULTIPLY", node.getString("nodeType"));
+        assertEquals(2, node.getInt("leftRows"));
+        assertEquals(3, node.getInt("leftCols"));
+        assertEquals(3, node.getInt("rightRows"));
+        assertEquals(2, node.getInt("rightCols"));
+        assertEquals(2, node.getInt("tasks"));
+        assertFalse(node.getBoolean("failed"));
+
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("scheduling.Batch")
+                && e.getInt("tasks") == 2));
+        assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("scheduling.TaskExecution")
+                && e.getLong("queueWait") >= 0));
+    }
+
+    @Test
+    @DisplayName("Trace recorder captures node phases and worker tasks")
+    void testTraceTimeline() throws Exception {
+        TraceRecorder tracer = new TraceRecorder();
+        LinearAlgebraEngine traced = new LinearAlgebraEngine(2, new ExecutorOptions().trace(tracer));
+        List<ComputationNode> children = new ArrayList<>();
+        children.add(new ComputationNode(new double[][]{{1, 2}, {3, 4}, {5, 6}}));
+        children.add(new ComputationNode(new double[][]{{1, 1}, {1, 1}, {1, 1}}));
+        try {
+            traced.run(new ComputationNode(ComputationNodeType.ADD, children));
+        } finally {
+            traced.shutdown();
+        }
+
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("lae", ".trace.json");
+        tracer.write(file.toString());
+        com.fasterxml.jackson.databind.JsonNode events =
+                new com.fasterxml.jackson.databind.ObjectMapper().readTree(file.toFile()).get("traceEvents");
+        java.nio.file.Files.deleteIfExists(file);
+
+        int tasks = 0;
+        boolean sawNode = false;
+        boolean sawSubmit = false;
+        boolean sawWorkerLane = false;
+        for (com.fasterxml.jackson.databind.JsonNode event : events) {
+            String name = event.get("name").asText();
+            if (event.get("ph").asText().equals("M")) {
+                sawWorkerLane |= event.get("args").get("name").asText().startsWith("Worker #");
+                continue;
+            }
+            assertEquals("X", event.get("ph").asText());
+            assertTrue(event.get("dur").asDouble() >= 0);
+            if (name.equals("task")) {
+                tasks++;
+                assertNotEquals(TraceRecorder.ENGINE_LANE, event.get("tid").asInt());
+            } else if (name.equals("ADD")) {
+                sawNode = true;
+                assertEquals("3x2", event.get("args").get("left").asText());
+            } else if (name.equals("submitAll")) {
+                sawSubmit = true;
+            }
+        }
+        assertTrue(tasks >= 1);
+        assertTrue(sawNode);
+        assertTrue(sawSubmit);
+        assertTrue(sawWorkerLane);
+    }
+
+    @Test
+    @DisplayName("Referenced leaves are loaded when computed and left untouched in their files")
+    void testReferencedLeaves() throws Exception {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("refs");
+        java.nio.file.Path a = dir.resolve("a.npy");
+        java.nio.file.Path json = dir.resolve("expr.json");
+        try {
+            BinaryMatrix.writeNpy(new double[][]{{1, 2}, {3, 4}}, a);
+            // -a + a + a: the same file three times, negated in place as the left operand of one node
+            java.nio.file.Files.writeString(json, "{\"operator\": \"+\", \"operands\": ["
+                    + "{\"operator\": \"-\", \"operands\": [{\"ref\": \"a.npy\"}]}, {\"ref\": \"a.npy\"}, {\"ref\": \"a.npy\"}]}");
+            ComputationNode root = new InputParser().parse(json.toString());
+            ComputationNode leaf = root.getChildren().get(1);
+            assertNotNull(leaf.getRef());
+            assertEquals(2, leaf.getRef().getCols());
+
+            // Changing the file after parsing shows the data was not read until the engine needed it
+            BinaryMatrix.writeNpy(new double[][]{{10, 20}, {30, 40}}, a);
+            double[][] result = lae.run(root).getMatrix();
+            assertArrayEquals(new double[][]{{10, 20}, {30, 40}}, result);
+            assertArrayEquals(new double[][]{{10, 20}, {30, 40}}, BinaryMatrix.read(a));
+        } finally {
+            java.nio.file.Files.deleteIfExists(a);
+            java.nio.file.Files.deleteIfExists(json);
+            java.nio.file.Files.delete(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("Shared nodes are computed once and not changed by the parents that use them")
+    void testSharedNodes() throws Exception {
+        TraceRecorder tracer = new TraceRecorder();
+        LinearAlgebraEngine traced = new LinearAlgebraEngine(2, new ExecutorOptions().trace(tracer));
+        ComputationNode a = new ComputationNode(new double[][]{{1, 2}, {3, 4}});
+        // S = -A; result = S + S + A + (S * A); A and S are each the left operand of some node
+        ComputationNode s = new ComputationNode(ComputationNodeType.NEGATE, new ArrayList<>(List.of(a)));
+        ComputationNode product = new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(s, a)));
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(s, s, a, product)));
+        double[][] result;
+        try {
+            result = traced.run(root).getMatrix();
+        } finally {
+            traced.shutdown();
+        }
+        // -A - A + A + (-A * A) = -A - A*A; A*A = {{7, 10}, {15, 22}}
+        assertArrayEquals(new double[][]{{-8, -12}, {-18, -26}}, result);
+
+        java.nio.file.Path file = java.nio.file.Files.createTempFile("shared", ".trace.json");
+        tracer.write(file.toString());
+        com.fasterxml.jackson.databind.JsonNode events =
+                new com.fasterxml.jackson.databind.ObjectMapper().readTree(file.toFile()).get("traceEvents");
+        java.nio.file.Files.deleteIfExists(file);
+        int negations = 0;
+        int nodes = 0;
+        for (com.fasterxml.jackson.databind.JsonNode event : events) {
+            if (event.get("cat") != null && event.get("cat").asText().equals("node")) {
+                nodes++;
+                negations += event.get("name").asText().equals("NEGATE") ? 1 : 0;
+            }
+        }
+        assertEquals(1, negations);
+        assertEquals(5, nodes); // NEGATE, MULTIPLY and three binary ADDs
+    }
+
+    @Test
+    @DisplayName("N-ary operators below the root are nested too")
+    void testNestedNaryOperator() {
+        ComputationNode inner = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(
+                new ComputationNode(new double[][]{{1}}), new ComputationNode(new double[][]{{2}}),
+                new ComputationNode(new double[][]{{3}}))));
+        ComputationNode root = new ComputationNode(ComputationNodeType.ADD,
+                new ArrayList<>(List.of(inner, new ComputationNode(new double[][]{{10}}))));
+        assertEquals(16.0, lae.run(root).getMatrix()[0][0], DELTA);
+    }
+
+    @Test
+    @DisplayName("Many threads evaluate different expressions on one engine at once")
+    void testConcurrentEvaluations() throws Exception {
+        int threads = 6;
+        int rounds = 15;
+        java.util.concurrent.ExecutorService callers = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        try {
+            List<java.util.concurrent.Future<Integer>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final double k = t + 1;
+                done.add(callers.submit(() -> {
+                    EvaluationContext context = new EvaluationContext();
+                    for (int r = 0; r < rounds; r++) {
+                        // (k*I)(A) + (-A), with A's entries unique to this thread and round: (k - 1) * A
+                        double[][] a = {{k, r}, {r + 1, k + r}};
+                        ComputationNode scale = new ComputationNode(ComputationNodeType.MULTIPLY, new ArrayList<>(List.of(
+                                new ComputationNode(new double[][]{{k, 0}, {0, k}}), new ComputationNode(a))));
+                        ComputationNode negate = new ComputationNode(ComputationNodeType.NEGATE, new ArrayList<>(List.of(
+                                new ComputationNode(new double[][]{{k, r}, {r + 1, k + r}}))));
+                        ComputationNode root = new ComputationNode(ComputationNodeType.ADD, new ArrayList<>(List.of(scale, negate)));
+                        double[][] result = lae.run(root, context).getMatrix();
+                        assertSame(root, context.getResult());
+                        for (int i = 0; i < 2; i++) {
+                            for (int j = 0; j < 2; j++) {
+                                assertEquals((k - 1) * a[i][j], result[i][j], DELTA);
+                            }
+                        }
+                    }
+                    return context.getNodesComputed();
+                }));
+            }
+            for (java.util.concurrent.Future<Integer> f : done) {
+                assertEquals(rounds * 3, f.get(30, java.util.concurrent.TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("The context-free entry points use the engine's default context")
+    void testDefaultContext() {
+        ComputationNode negate = new ComputationNode(ComputationNodeType.NEGATE,
+                new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, -2}}))));
+        lae.loadAndCompute(negate);
+        assertArrayEquals(new double[]{-1, 2}, negate.getMatrix()[0], DELTA);
+        // Operands are dropped once their node is computed
+        assertThrows(IllegalArgumentException.class, () -> lae.createAddTasks());
+        assertThrows(IllegalArgumentException.class, () -> lae.createMultiplyTasks());
+        assertThrows(IllegalArgumentException.class, () -> lae.createNegateTasks());
+        assertThrows(IllegalArgumentException.class, () -> lae.createTransposeTasks());
+    }
+
+    @Test
+    @DisplayName("An engine on a caller-owned executor leaves it running on shutdown")
+    void testSharedExecutor() throws Exception {
+        BatchExecutor shared = new TiredExecutor(2);
+        try {
+            LinearAlgebraEngine first = new LinearAlgebraEngine(shared, null);
+            LinearAlgebraEngine second = new LinearAlgebraEngine(shared, null);
+            ComputationNode negate = new ComputationNode(ComputationNodeType.NEGATE,
+                    new ArrayList<>(List.of(new ComputationNode(new double[][]{{3}}))));
+            assertEquals(-3.0, first.run(negate).getMatrix()[0][0], DELTA);
+            first.shutdown();
+            ComputationNode transpose = new ComputationNode(ComputationNodeType.TRANSPOSE,
+                    new ArrayList<>(List.of(new ComputationNode(new double[][]{{1, 2}}))));
+            assertEquals(2, second.run(transpose).getMatrix().length);
+        } finally {
+            shared.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new LinearAlgebraEngine(null, null));
+    }
 }
@@ -0,0 +1,45 @@
+import parser.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestOutputWriter {
+
+    private static final double[][] MATRIX = {{0.1, 1.0 / 3, -2}, {1e-300, Double.MAX_VALUE, 42.5}};
+
+    @Test
+    @DisplayName("JSON output is compact and round-trips every double exactly")
+    void testJsonOutput() throws Exception {
+        Path file = Files.createTempFile("out", ".json");
+        try {
+            OutputWriter.write(MATRIX, file.toString());
+            String text = Files.readString(file);
+            assertFalse(text.contains("\n"));
+            assertTrue(text.startsWith("{\"result\":[[0.1,"), text);
+            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
+            double[][] read = mapper.treeToValue(mapper.readTree(file.toFile()).get("result"), double[][].class);
+            assertArrayEquals(MATRIX, read);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("A .npy or .bin output path writes the binary format")
+    void testBinaryOutput() throws Exception {
+        for (String suffix : new String[]{".npy", ".bin"}) {
+            Path file = Files.createTempFile("out", suffix);
+            try {
+                OutputWriter.write(MATRIX, file.toString());
+                assertTrue(BinaryMatrix.isBinary(file));
+                assertArrayEquals(MATRIX, BinaryMatrix.read(file));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 import memory.*;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 class TestSharedVector {
@@ -321,4 +322,72 @@ class TestSharedVector {
         assertEquals(1.0, v.get(1), DELTA);
         assertEquals(2.0, v.get(2), DELTA);
     }
+
+    @Test
+    @DisplayName("Contended lock wait is recorded as a JFR event")
+    void testLockWaitEvent() throws Exception {
+        SharedVector v = new SharedVector(new double[]{1, 2, 3, 4}, VectorOrientation.ROW_MAJOR);
+        java.nio.file.Path dump = java.nio.file.Files.createTempFile("vector", ".jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable("memory.VectorLockWait");
+            recording.start();
+            v.writeLock();
+            Thread reader = new Thread(() -> {
+                v.readLock();
+                v.readUnlock();
+            });
+            reader.start();
+            // Hold the lock for a while after the reader is actually blocked on it
+            while (reader.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            v.writeUnlock();
+            reader.join();
+            v.readLock(); // uncontended: no event
+            v.readUnlock();
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<jdk.jfr.consumer.RecordedEvent> events = jdk.jfr.consumer.RecordingFile.readAllEvents(dump);
+        java.nio.file.Files.deleteIfExists(dump);
+        assertEquals(1, events.size());
+        jdk.jfr.consumer.RecordedEvent wait = events.get(0);
+        assertFalse(wait.getBoolean("write"));
+        assertEquals(4, wait.getInt("length"));
+        assertEquals("ROW_MAJOR", wait.getString("orientation"));
+        assertTrue(wait.getDuration().toMillis() >= 20);
+    }
+
+    @Test
+    @DisplayName("A new reader queues behind a waiting writer")
+    void testReaderDoesNotBargePastWriter() throws Exception {
+        SharedVector v = new SharedVector(new double[]{1, 2, 3}, VectorOrientation.ROW_MAJOR);
+        List<String> order = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        v.readLock();
+        Thread writer = new Thread(() -> {
+            v.writeLock();
+            order.add("writer");
+            v.writeUnlock();
+        });
+        writer.start();
+        while (writer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        Thread reader = new Thread(() -> {
+            v.readLock();
+            order.add("reader");
+            v.readUnlock();
+        });
+        reader.start();
+        // Blocked behind the writer even though only a read lock is held
+        while (reader.getState() != Thread.State.WAITING && reader.isAlive()) {
+            Thread.sleep(1);
+        }
+        assertTrue(order.isEmpty());
+        v.readUnlock();
+        writer.join(2000);
+        reader.join(2000);
+        assertEquals(List.of("writer", "reader"), order);
+    }
 }
@@ -149,6 +149,77 @@ class TestTiredExecutor {
         assertEquals(1000, counter[0]);
     }
 
+    @Test
+    @DisplayName("Chunked batch runs every task exactly once")
+    void testBatchRunsEachTaskOnce() {
+        executor = new TiredExecutor(3);
+        int[] hits = new int[1001];
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < hits.length; i++) {
+            final int idx = i;
+            tasks.add(() -> hits[idx]++);
+        }
+        executor.submitAll(tasks);
+        for (int i = 0; i < hits.length; i++) {
+            assertEquals(1, hits[i], "task " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("submitAll rejects a null task before running anything")
+    void testSubmitAllRejectsNullTask() {
+        executor = new TiredExecutor(2);
+        int[] counter = {0};
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> counter[0]++);
+        tasks.add(null);
+        assertThrows(IllegalArgumentException.class, () -> executor.submitAll(tasks));
+        assertEquals(0, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Concurrent batches complete independently")
+    void testConcurrentBatchesCompleteIndependently() throws Exception {
+        executor = new TiredExecutor(4);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        List<Runnable> slow = new ArrayList<>();
+        slow.add(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        java.util.concurrent.CompletableFuture<Void> slowBatch = executor.submitAllAsync(slow);
+
+        int[] counter = {0};
+        List<Runnable> fast = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            fast.add(() -> {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            });
+        }
+        Thread other = new Thread(() -> executor.submitAll(fast));
+        other.start();
+        other.join(2000);
+
+        assertFalse(other.isAlive(), "fast batch should not wait for the slow one");
+        assertEquals(6, counter[0]);
+        assertFalse(slowBatch.isDone());
+        release.countDown();
+        slowBatch.get(2, java.util.concurrent.TimeUnit.SECONDS);
+        assertTrue(slowBatch.isDone());
+    }
+
+    @Test
+    @DisplayName("Async handle of an empty batch is already complete")
+    void testEmptyAsyncBatchIsDone() {
+        executor = new TiredExecutor(2, SchedulingMode.WORK_STEALING);
+        assertTrue(executor.submitAllAsync(new ArrayList<>()).isDone());
+    }
+
     // Shutdown Tests
     @Test
     @DisplayName("Shutdown with no tasks")
@@ -178,6 +249,98 @@ class TestTiredExecutor {
         executor = null;
     }
 
+    @Test
+    @DisplayName("Shutdown fails batches still waiting in work-stealing deques")
+    void testShutdownAbortsQueuedStealingTasks() throws Exception {
+        executor = new TiredExecutor(1, SchedulingMode.WORK_STEALING);
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.atomic.AtomicInteger ran = new java.util.concurrent.atomic.AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            tasks.add(ran::incrementAndGet);
+        }
+        java.util.concurrent.CompletableFuture<Void> handle = executor.submitAllAsync(tasks);
+        assertTrue(started.await(5, java.util.concurrent.TimeUnit.SECONDS));
+
+        TiredExecutor stopping = executor;
+        Thread shutdown = new Thread(() -> {
+            try {
+                stopping.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        shutdown.start();
+        // Waiting for the worker means the shutdown request is in: the blocked task is its last
+        while (shutdown.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        shutdown.join(5000);
+        assertFalse(shutdown.isAlive());
+        executor = null;
+
+        java.util.concurrent.ExecutionException failure = assertThrows(java.util.concurrent.ExecutionException.class,
+                () -> handle.get(5, java.util.concurrent.TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+        assertEquals(0, ran.get());
+        assertEquals(0, stopping.getQueueDepth());
+    }
+
+    @Test
+    @DisplayName("Shutdown during a sliced handoff batch never leaves the batch hanging")
+    void testShutdownDuringHandoffSlices() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            TiredExecutor stopping = new TiredExecutor(2);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                tasks.add(Thread::onSpinWait);
+            }
+            // Two workers make eight slices, so workers are handing themselves the next slice as shutdown lands
+            java.util.concurrent.CompletableFuture<Void> handle = stopping.submitAllAsync(tasks);
+            stopping.shutdown();
+
+            try {
+                handle.get(5, java.util.concurrent.TimeUnit.SECONDS);
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+            assertEquals(0, stopping.getQueueDepth());
+        }
+    }
+
+    @Test
+    @DisplayName("Interrupted submitAll throws and keeps the interrupt flag")
+    void testSubmitAllInterrupted() throws Exception {
+        executor = new TiredExecutor(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> executor.submitAll(tasks));
+            assertTrue(Thread.interrupted());
+        } finally {
+            release.countDown();
+        }
+    }
+
     //Fairness Tests
 
     private double extractFairnessScore(String report) {
@@ -301,6 +464,686 @@ class TestTiredExecutor {
     // ==========================================
 
 
+    // ==========================================
+    //        WORK STEALING TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Work stealing executor runs every task of a big batch")
+    void testWorkStealingRunsAllTasks() {
+        executor = new TiredExecutor(4, SchedulingMode.WORK_STEALING);
+        int[] counter = {0};
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            tasks.add(() -> {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        assertEquals(10000, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Work stealing spreads a skewed batch over idle workers")
+    void testWorkStealingBalancesSkewedBatch() {
+        executor = new TiredExecutor(4, SchedulingMode.WORK_STEALING);
+        java.util.Set<Thread> runners = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        List<Runnable> tasks = new ArrayList<>();
+        // Every task is slow, so workers that finish their chunk early steal the rest
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                runners.add(Thread.currentThread());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        assertTrue(runners.size() > 1, "tasks should have been spread over several workers");
+    }
+
+    @Test
+    @DisplayName("Work stealing executor handles several batches and single submits")
+    void testWorkStealingMultipleBatches() {
+        executor = new TiredExecutor(3, SchedulingMode.WORK_STEALING);
+        SharedMatrix matrix = new SharedMatrix(new double[][]{{1, 2}, {3, 4}, {5, 6}});
+        for (int batch = 0; batch < 3; batch++) {
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < matrix.length(); i++) {
+                final int row = i;
+                tasks.add(() -> matrix.get(row).negate());
+            }
+            executor.submitAll(tasks);
+        }
+        double[][] result = matrix.readRowMajor();
+        assertEquals(-1.0, result[0][0], DELTA);
+        assertEquals(-6.0, result[2][1], DELTA);
+        assertThrows(IllegalArgumentException.class, () -> executor.submit(null));
+    }
+
+    // ==========================================
+    //        VIRTUAL THREAD BACKEND TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Virtual thread backend runs tasks on virtual threads")
+    void testVirtualThreadBackendRunsTasks() {
+        executor = new TiredExecutor(4, new ExecutorOptions().virtualThreads(true));
+        java.util.concurrent.atomic.AtomicInteger onVirtual = new java.util.concurrent.atomic.AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            tasks.add(() -> {
+                if (Thread.currentThread().isVirtual()) {
+                    onVirtual.incrementAndGet();
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        assertEquals(200, onVirtual.get());
+    }
+
+    @Test
+    @DisplayName("Virtual thread backend keeps worker accounting")
+    void testVirtualThreadBackendReport() throws InterruptedException {
+        executor = new TiredExecutor(2, new ExecutorOptions()
+                .mode(SchedulingMode.WORK_STEALING)
+                .virtualThreads(true));
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    Math.sqrt(j);
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        String report = executor.getWorkerReport();
+        assertTrue(report.contains("Threads: virtual"));
+        assertTrue(extractFairnessScore(report) >= 0);
+        executor.shutdown();
+        executor = null;
+    }
+
+    // ==========================================
+    //        SPIN HANDOFF TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Spin-park handoff runs many small batches")
+    void testSpinHandoffRunsBatches() {
+        executor = new TiredExecutor(4, new ExecutorOptions().spinHandoff(true));
+        int[] counter = {0};
+        for (int batch = 0; batch < 200; batch++) {
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> {
+                    synchronized (counter) {
+                        counter[0]++;
+                    }
+                });
+            }
+            executor.submitAll(tasks);
+        }
+        assertEquals(1600, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Spin-park handoff wakes parked workers for shutdown")
+    void testSpinHandoffShutdownAfterPark() throws InterruptedException {
+        executor = new TiredExecutor(3, new ExecutorOptions()
+                .mode(SchedulingMode.WORK_STEALING)
+                .spinHandoff(true));
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {});
+        executor.submitAll(tasks);
+        // Give the workers time to exhaust their spins and park
+        Thread.sleep(100);
+        executor.submitAll(tasks);
+        executor.shutdown();
+        executor = null;
+    }
+
+    // ==========================================
+    //        COST-AWARE SCHEDULING TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Costed batch with uneven costs runs every task once")
+    void testCostedBatchRunsEachTaskOnce() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor costExecutor = new TiredExecutor(3, mode);
+            try {
+                int[] hits = new int[60];
+                List<Runnable> tasks = new ArrayList<>();
+                for (int i = 0; i < hits.length; i++) {
+                    final int idx = i;
+                    // Triangular workload: row i does i units of work
+                    tasks.add(new CostedTask(() -> {
+                        for (int j = 0; j < idx * 100; j++) {
+                            Math.sqrt(j);
+                        }
+                        hits[idx]++;
+                    }, idx));
+                }
+                tasks.add(() -> {}); // an uncosted task mixed in counts as cost 1
+                costExecutor.submitAll(tasks);
+                for (int i = 0; i < hits.length; i++) {
+                    assertEquals(1, hits[i], mode + " task " + i);
+                }
+            } finally {
+                try {
+                    costExecutor.shutdown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Costed batch with equal costs runs every task once")
+    void testEqualCostBatchRunsEachTaskOnce() throws InterruptedException {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor costExecutor = new TiredExecutor(3, mode);
+            try {
+                int[] hits = new int[50];
+                List<Runnable> tasks = new ArrayList<>();
+                for (int i = 0; i < hits.length; i++) {
+                    final int idx = i;
+                    tasks.add(new CostedTask(() -> hits[idx]++, 7));
+                }
+                costExecutor.submitAll(tasks);
+                for (int i = 0; i < hits.length; i++) {
+                    assertEquals(1, hits[i], mode + " task " + i);
+                }
+            } finally {
+                costExecutor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("CostedTask rejects invalid arguments")
+    void testCostedTaskValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new CostedTask(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CostedTask(() -> {}, -1));
+        assertEquals(42, new CostedTask(() -> {}, 42).getCost());
+    }
+
+    // ==========================================
+    //        ELASTIC POOL TESTS
+    // ==========================================
+
+    private static List<Runnable> sleepingTasks(int count, long millis) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(() -> {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        return tasks;
+    }
+
+    @Test
+    @DisplayName("Elastic pool grows under load and shrinks when idle")
+    void testElasticPoolGrowsAndShrinks() throws InterruptedException {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            executor = new TiredExecutor(1, new ExecutorOptions().mode(mode).elastic(1, 4, 50));
+            assertEquals(1, executor.getPoolSize());
+            executor.submitAll(sleepingTasks(8, 20));
+            assertEquals(4, executor.getPoolSize(), mode + " should have grown to its maximum");
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (executor.getPoolSize() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, executor.getPoolSize(), mode + " should have shrunk back to its minimum");
+            assertTrue(executor.getWorkerReport().contains("Retired Workers: 3"));
+
+            // Still usable after shrinking
+            int[] counter = {0};
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                tasks.add(() -> {
+                    synchronized (counter) {
+                        counter[0]++;
+                    }
+                });
+            }
+            executor.submitAll(tasks);
+            assertEquals(10, counter[0]);
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    @Test
+    @DisplayName("Elastic pool never exceeds its maximum with concurrent batches")
+    void testElasticPoolRespectsMaximum() throws InterruptedException {
+        executor = new TiredExecutor(2, new ExecutorOptions().elastic(2, 3, 1000));
+        Thread other = new Thread(() -> executor.submitAll(sleepingTasks(6, 10)));
+        other.start();
+        executor.submitAll(sleepingTasks(6, 10));
+        other.join(2000);
+        assertTrue(executor.getPoolSize() <= 3);
+    }
+
+    @Test
+    @DisplayName("Invalid elastic settings throw exception")
+    void testInvalidElasticSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ExecutorOptions().elastic(0, 2, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExecutorOptions().elastic(3, 2, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ExecutorOptions().elastic(1, 2, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TiredExecutor(5, new ExecutorOptions().elastic(1, 4, 10)));
+    }
+
+    // ==========================================
+    //        FAILURE AND SUPERVISION TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Task failure is rethrown from submitAll and the rest of the batch still runs")
+    void testTaskFailurePropagatesToBatch() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor failingExecutor = new TiredExecutor(3, mode);
+            try {
+                int[] counter = {0};
+                List<Runnable> tasks = new ArrayList<>();
+                for (int i = 0; i < 30; i++) {
+                    final int idx = i;
+                    tasks.add(() -> {
+                        if (idx == 7) {
+                            throw new IllegalStateException("bad row " + idx);
+                        }
+                        synchronized (counter) {
+                            counter[0]++;
+                        }
+                    });
+                }
+                IllegalStateException e = assertThrows(IllegalStateException.class, () -> failingExecutor.submitAll(tasks));
+                assertEquals("bad row 7", e.getMessage());
+                assertEquals(29, counter[0], mode.toString());
+
+                // The pool kept its capacity and keeps working
+                assertEquals(3, failingExecutor.getPoolSize());
+                counter[0] = 0;
+                tasks.set(7, () -> {
+                    synchronized (counter) {
+                        counter[0]++;
+                    }
+                });
+                failingExecutor.submitAll(tasks);
+                assertEquals(30, counter[0]);
+            } finally {
+                try {
+                    failingExecutor.shutdown();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Async handle completes exceptionally when a task fails")
+    void testAsyncHandleCompletesExceptionally() {
+        executor = new TiredExecutor(2);
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            throw new IllegalArgumentException("boom");
+        });
+        java.util.concurrent.CompletableFuture<Void> handle = executor.submitAllAsync(tasks);
+        java.util.concurrent.ExecutionException e = assertThrows(java.util.concurrent.ExecutionException.class,
+                () -> handle.get(2, java.util.concurrent.TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    }
+
+    @Test
+    @DisplayName("Worker killed by a single submitted task is replaced")
+    void testDeadWorkerIsReplaced() throws InterruptedException {
+        executor = new TiredExecutor(2);
+        executor.submit(() -> {
+            throw new RuntimeException("kills the worker");
+        });
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!executor.getWorkerReport().contains("Replaced Workers: 1") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(executor.getWorkerReport().contains("Replaced Workers: 1"));
+        assertEquals(2, executor.getPoolSize());
+
+        int[] counter = {0};
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(() -> {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        assertEquals(20, counter[0]);
+    }
+
+    @Test
+    @DisplayName("Executor with a decaying fatigue policy")
+    void testDecayingFatiguePolicyExecutor() {
+        executor = new TiredExecutor(3, new ExecutorOptions().fatiguePolicy(FatiguePolicy.exponentialDecay(1000)));
+        int[] counter = {0};
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tasks.add(() -> {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            });
+        }
+        executor.submitAll(tasks);
+        executor.submitAll(tasks);
+        assertEquals(200, counter[0]);
+        String report = executor.getWorkerReport();
+        assertTrue(report.contains("Fatigue Policy: exponential decay (half-life 1000 ms)"));
+        assertTrue(extractFairnessScore(report) >= 0);
+    }
+
+    // ==========================================
+    //        PRIORITY AND TENANT TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Interactive batch overtakes a queued BATCH-priority job")
+    void testInteractiveOvertakesBatch() throws Exception {
+        executor = new TiredExecutor(1);
+        java.util.concurrent.CompletableFuture<Void> background =
+                executor.submitAllAsync(sleepingTasks(40, 10), Priority.BATCH, "reports");
+        int[] counter = {0};
+        List<Runnable> interactive = new ArrayList<>();
+        interactive.add(() -> counter[0]++);
+        executor.submitAll(interactive, Priority.INTERACTIVE, "ui");
+        assertEquals(1, counter[0]);
+        assertFalse(background.isDone(), "Interactive work should not wait for the whole background job");
+        background.get(5, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Weighted tenants share a backlogged worker proportionally")
+    void testWeightedTenants() throws Exception {
+        executor = new TiredExecutor(1);
+        executor.setTenantWeight("heavy", 3);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        executor.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<String> order = java.util.Collections.synchronizedList(new ArrayList<>());
+        List<java.util.concurrent.CompletableFuture<Void>> handles = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            for (String tenant : new String[]{"heavy", "light"}) {
+                List<Runnable> tasks = new ArrayList<>();
+                tasks.add(() -> order.add(tenant));
+                handles.add(executor.submitAllAsync(tasks, Priority.NORMAL, tenant));
+            }
+        }
+        release.countDown();
+        for (java.util.concurrent.CompletableFuture<Void> handle : handles) {
+            handle.get(2, java.util.concurrent.TimeUnit.SECONDS);
+        }
+        int heavy = 0;
+        for (String tenant : order.subList(0, 8)) {
+            if (tenant.equals("heavy")) {
+                heavy++;
+            }
+        }
+        assertEquals(6, heavy, "Weight 3 against weight 1 should get 6 of the first 8 slots, got " + order);
+    }
+
+    @Test
+    @DisplayName("Priority and tenant arguments are validated")
+    void testPriorityTenantValidation() {
+        executor = new TiredExecutor(2);
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {});
+        assertThrows(IllegalArgumentException.class, () -> executor.setTenantWeight("t", 0));
+        assertThrows(IllegalArgumentException.class, () -> executor.setTenantWeight(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> executor.submitAll(tasks, null, "t"));
+        assertThrows(IllegalArgumentException.class, () -> executor.submitAllAsync(tasks, Priority.NORMAL, null));
+    }
+
+    @Test
+    @DisplayName("Interactive batch in work-stealing mode")
+    void testInteractiveWorkStealing() {
+        executor = new TiredExecutor(2, SchedulingMode.WORK_STEALING);
+        java.util.concurrent.CompletableFuture<Void> background =
+                executor.submitAllAsync(sleepingTasks(20, 10), Priority.BATCH, "reports");
+        int[] counter = {0};
+        List<Runnable> interactive = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            interactive.add(() -> {
+                synchronized (counter) {
+                    counter[0]++;
+                }
+            });
+        }
+        executor.submitAll(interactive, Priority.INTERACTIVE, "ui");
+        assertEquals(10, counter[0]);
+        assertFalse(background.isDone());
+        background.join();
+    }
+
+    // ==========================================
+    //        BACKPRESSURE TESTS
+    // ==========================================
+
+    private static Runnable blocker(java.util.concurrent.CountDownLatch started, java.util.concurrent.CountDownLatch release) {
+        return () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("trySubmit refuses tasks once the queue is full")
+    void testTrySubmitBounded() throws Exception {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            executor = new TiredExecutor(1, new ExecutorOptions().mode(mode).queueCapacity(2));
+            java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+            java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+            executor.submit(blocker(started, release));
+            assertTrue(started.await(2, java.util.concurrent.TimeUnit.SECONDS));
+            java.util.concurrent.atomic.AtomicInteger ran = new java.util.concurrent.atomic.AtomicInteger();
+            assertTrue(executor.trySubmit(ran::incrementAndGet));
+            assertTrue(executor.trySubmit(ran::incrementAndGet));
+            assertFalse(executor.trySubmit(ran::incrementAndGet), mode + ": queue should be full");
+            assertEquals(2, executor.getQueueDepth());
+            assertEquals(1, executor.getRejectedCount());
+            assertTrue(executor.getWorkerReport().contains("Queue Depth: 2 | Capacity: 2 | Peak: 2 | Rejected: 1"));
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (ran.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, ran.get());
+            assertEquals(0, executor.getQueueDepth());
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Timed submit waits for room and gives up after the timeout")
+    void testTimedSubmit() throws Exception {
+        executor = new TiredExecutor(1, new ExecutorOptions().queueCapacity(1));
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        executor.submit(blocker(started, release));
+        assertTrue(started.await(2, java.util.concurrent.TimeUnit.SECONDS));
+        assertTrue(executor.trySubmit(() -> {}));
+        assertFalse(executor.submit(() -> {}, 50, java.util.concurrent.TimeUnit.MILLISECONDS));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        assertTrue(executor.submit(() -> {}, 2, java.util.concurrent.TimeUnit.SECONDS));
+        releaser.join();
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("Batches bigger than the queue wait for room instead of overfilling it")
+    void testBatchBackpressure() throws Exception {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            executor = new TiredExecutor(2, new ExecutorOptions().mode(mode).queueCapacity(3));
+            java.util.concurrent.atomic.AtomicInteger ran = new java.util.concurrent.atomic.AtomicInteger();
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                tasks.add(ran::incrementAndGet);
+            }
+            executor.submitAll(tasks);
+            assertEquals(200, ran.get(), mode + " should run the whole batch");
+            assertTrue(executor.getPeakQueueDepth() <= 3, mode + " peak " + executor.getPeakQueueDepth());
+            assertEquals(0, executor.getQueueDepth());
+            executor.shutdown();
+        }
+        executor = null;
+    }
+
+    @Test
+    @DisplayName("Queue depth counts a handoff batch's tasks, not its slices")
+    void testHandoffQueueDepthCountsTasks() throws Exception {
+        executor = new TiredExecutor(1, new ExecutorOptions().queueCapacity(100));
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        executor.submit(blocker(started, release));
+        assertTrue(started.await(2, java.util.concurrent.TimeUnit.SECONDS));
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(() -> {});
+        }
+        java.util.concurrent.CompletableFuture<Void> handle = executor.submitAllAsync(tasks);
+        assertEquals(10, executor.getQueueDepth());
+        release.countDown();
+        handle.get(2, java.util.concurrent.TimeUnit.SECONDS);
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(10, executor.getPeakQueueDepth());
+    }
+
+    @Test
+    @DisplayName("An interrupted submit rejects the task and keeps the interrupt")
+    void testSubmitInterrupted() throws Exception {
+        executor = new TiredExecutor(1, new ExecutorOptions().queueCapacity(1));
+        java.util.concurrent.CountDownLatch started = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        executor.submit(blocker(started, release));
+        assertTrue(started.await(2, java.util.concurrent.TimeUnit.SECONDS));
+        assertTrue(executor.trySubmit(() -> {}));
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, () -> executor.submit(() -> {}));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+            release.countDown();
+        }
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    @DisplayName("Queue capacity and submit after shutdown are validated")
+    void testQueueCapacityValidation() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new ExecutorOptions().queueCapacity(0));
+        executor = new TiredExecutor(2);
+        assertEquals(Integer.MAX_VALUE, executor.getQueueCapacity());
+        executor.shutdown();
+        assertThrows(IllegalStateException.class, () -> executor.trySubmit(() -> {}));
+        assertThrows(IllegalStateException.class, () -> executor.submit(() -> {}));
+    }
+
+    // ==========================================
+    //        LATENCY METRICS TESTS
+    // ==========================================
+
+    @Test
+    @DisplayName("Report shows per-worker and per-batch latencies")
+    void testLatencyReport() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            executor = new TiredExecutor(2, mode);
+            executor.submitAll(sleepingTasks(8, 2));
+            executor.submitAll(sleepingTasks(4, 1));
+            String report = executor.getWorkerReport();
+            assertTrue(report.contains("All Workers: Queue Wait: p50="), report);
+            assertTrue(report.contains("| Handoff: p50="), report);
+            assertTrue(report.contains("Batch #1 | NORMAL / default | Tasks: 8"), report);
+            assertTrue(report.contains("Batch #2 | NORMAL / default | Tasks: 4"), report);
+            assertTrue(extractFairnessScore(report) >= 0);
+        }
+    }
+
+    @Test
+    @DisplayName("JSON report carries the latency histograms")
+    void testLatencyReportJson() throws Exception {
+        executor = new TiredExecutor(3, SchedulingMode.WORK_STEALING);
+        executor.submitAll(sleepingTasks(12, 1));
+        com.fasterxml.jackson.databind.JsonNode report =
+                new com.fasterxml.jackson.databind.ObjectMapper().readTree(executor.getWorkerReportJson());
+        assertEquals("WORK_STEALING", report.get("mode").asText());
+        assertEquals(3, report.get("workers").size());
+        long runs = 0;
+        long handoffs = 0;
+        for (com.fasterxml.jackson.databind.JsonNode worker : report.get("workers")) {
+            assertTrue(worker.get("run").has("p99_us"));
+            runs += worker.get("run").get("count").asLong();
+            handoffs += worker.get("handoff").get("count").asLong();
+        }
+        assertEquals(12, runs);
+        assertEquals(12, handoffs);
+        assertEquals(12, report.get("allWorkers").get("queueWait").get("count").asLong());
+        com.fasterxml.jackson.databind.JsonNode batch = report.get("recentBatches").get(0);
+        assertEquals(12, batch.get("tasks").asInt());
+        assertEquals(12, batch.get("run").get("count").asLong());
+        assertTrue(batch.get("run").get("p50_us").asDouble() >= 1000);
+        assertTrue(batch.get("run").get("max_us").asDouble() >= batch.get("run").get("p99_us").asDouble());
+        assertFalse(batch.get("failed").asBoolean());
+    }
+
+    @Test
+    @DisplayName("Reports on an unused executor leave its workers unstarted")
+    void testReportDoesNotStartWorkers() throws Exception {
+        executor = new TiredExecutor(3);
+        assertEquals(3, executor.getPoolSize());
+        assertTrue(executor.getWorkerReport().contains("Pool: 3 not started"));
+        com.fasterxml.jackson.databind.JsonNode report =
+                new com.fasterxml.jackson.databind.ObjectMapper().readTree(executor.getWorkerReportJson());
+        assertEquals(3, report.get("poolSize").asInt());
+        assertFalse(report.get("started").asBoolean());
+        assertEquals(0, report.get("workers").size());
+
+        executor.shutdown();
+        assertEquals(3, executor.getPoolSize());
+        assertTrue(executor.getWorkerReport().contains("Pool: 3 not started"));
+        executor = null;
+    }
+
     // ==========================================
     //        MATRIX OPERATIONS TESTS
     // ==========================================
@@ -96,6 +96,53 @@ class TestTiredThread {
         t1.join(1000);
         t2.join(1000);
     }
+    // Fatigue policy tests
+
+    @Test
+    @DisplayName("Decaying fatigue fades while the worker is idle")
+    void testDecayingFatigueFades() throws InterruptedException {
+        thread = new TiredThread(0, 1.0, FatiguePolicy.exponentialDecay(20));
+        thread.start();
+        thread.newTask(() -> {
+            for (int i = 0; i < 100000; i++) {
+                Math.sqrt(i);
+            }
+        });
+        Thread.sleep(50);
+        double afterWork = thread.getFatigue();
+        assertTrue(afterWork > 0);
+        Thread.sleep(200);
+        // Ten half-lives later, less than a thousandth should be left
+        assertTrue(thread.getFatigue() < afterWork / 100);
+        assertTrue(thread.getTimeUsed() > 0, "work time itself is never decayed");
+    }
+
+    @Test
+    @DisplayName("Lifetime fatigue does not fade")
+    void testLifetimeFatigueDoesNotFade() throws InterruptedException {
+        thread = new TiredThread(0, 1.0, FatiguePolicy.lifetime());
+        thread.start();
+        thread.newTask(() -> {
+            for (int i = 0; i < 10000; i++) {
+                Math.sqrt(i);
+            }
+        });
+        Thread.sleep(50);
+        double afterWork = thread.getFatigue();
+        Thread.sleep(50);
+        assertEquals(afterWork, thread.getFatigue(), 0.0);
+    }
+
+    @Test
+    @DisplayName("Exponential decay halves the load every half-life")
+    void testExponentialDecayMath() {
+        FatiguePolicy policy = FatiguePolicy.exponentialDecay(1);
+        assertEquals(100.0, policy.current(100.0, 0, 0), 1e-9);
+        assertEquals(50.0, policy.current(100.0, 0, 1_000_000), 1e-9);
+        assertEquals(25.0 + 10, policy.accumulate(100.0, 0, 2_000_000, 10), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> FatiguePolicy.exponentialDecay(0));
+    }
+
     // Shutdown tests
 
     @Test
@@ -0,0 +1,67 @@
+package scheduling;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// In the scheduling package: the partitioner is package-private
+class TestTaskPartitioner {
+
+    private static List<Runnable> costed(long... costs) {
+        List<Runnable> tasks = new ArrayList<>();
+        for (long cost : costs) {
+            tasks.add(new CostedTask(() -> {}, cost));
+        }
+        return tasks;
+    }
+
+    private static List<List<Long>> costs(List<List<Runnable>> bins) {
+        List<List<Long>> result = new ArrayList<>();
+        for (List<Runnable> bin : bins) {
+            List<Long> costs = new ArrayList<>();
+            for (Runnable task : bin) {
+                costs.add(CostedTask.costOf(task));
+            }
+            result.add(costs);
+        }
+        return result;
+    }
+
+    @Test
+    @DisplayName("Longest-first deals the largest tasks first, each to the bin that would finish earliest")
+    void testLongestFirstAssignment() {
+        TiredThread[] workers = {new TiredThread(0, 1.0), new TiredThread(1, 1.0)};
+        List<List<Runnable>> bins = TaskPartitioner.longestFirst(costed(1, 7, 3, 5, 2, 4), workers);
+        // 7 | 5, 4 | 3 onto the lighter bin, then 2 and 1 likewise: both end at 11
+        assertEquals(List.of(List.of(7L, 3L, 1L), List.of(5L, 4L, 2L)), costs(bins));
+    }
+
+    @Test
+    @DisplayName("Longest-first weighs each bin's load by its worker's fatigue factor")
+    void testLongestFirstFatigueWeighting() {
+        TiredThread[] workers = {new TiredThread(0, 1.0), new TiredThread(1, 2.0)};
+        List<Runnable> batch = costed(4, 4, 4);
+        List<List<Runnable>> bins = TaskPartitioner.longestFirst(batch, workers);
+        // The slower worker only wins once the faster one's finish time passes 2 * 4;
+        // the tie at 8 goes to the earlier, less tired worker
+        assertEquals(List.of(batch.get(0), batch.get(1)), bins.get(0));
+        assertEquals(List.of(batch.get(2)), bins.get(1));
+    }
+
+    @Test
+    @DisplayName("Partition uses longest-first only when costs differ")
+    void testPartitionChoosesByCosts() {
+        TiredThread[] workers = {new TiredThread(0, 1.0), new TiredThread(1, 3.0)};
+        // Uneven costs: sorted largest first
+        assertEquals(List.of(List.of(6L, 1L), List.of(2L)), costs(TaskPartitioner.partition(costed(1, 6, 2), workers)));
+        // Equal costs: contiguous ranges sized 3 : 1 by speed
+        List<Runnable> even = costed(5, 5, 5, 5, 5, 5, 5, 5);
+        List<List<Runnable>> bins = TaskPartitioner.partition(even, workers);
+        assertEquals(even.subList(0, 6), bins.get(0));
+        assertEquals(even.subList(6, 8), bins.get(1));
+    }
+}